@@ -7,28 +7,32 @@ import android.os.Handler;
 import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import io.github.sspanak.tt9.db.entities.AddWordResult;
 import io.github.sspanak.tt9.db.wordPairs.WordPairStore;
 import io.github.sspanak.tt9.db.words.DictionaryLoader;
+import io.github.sspanak.tt9.db.words.HotPositionsCache;
+import io.github.sspanak.tt9.db.words.SlowQueryStats;
+import io.github.sspanak.tt9.db.words.TopWordJournal;
 import io.github.sspanak.tt9.db.words.WordStore;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
 import io.github.sspanak.tt9.util.ConsumerCompat;
 import io.github.sspanak.tt9.util.Logger;
+import io.github.sspanak.tt9.util.Tracing;
 
 public class DataStore {
 	private final static String LOG_TAG = DataStore.class.getSimpleName();
 
 	private static final Handler asyncReturn = new Handler();
-	private static final ExecutorService executor = Executors.newCachedThreadPool();
+	// the suggestions and the settings screens must not wait for the writes
+	private static final Lane interactiveLane = new Lane("Interactive", Thread.NORM_PRIORITY);
+	private static final Lane prefetchLane = new Lane("Prefetch", Thread.MIN_PRIORITY, interactiveLane, SettingsStore.DATA_STORE_MAX_YIELD_TIME);
+	private static final Lane backgroundLane = new Lane("Background", Thread.MIN_PRIORITY, interactiveLane, SettingsStore.DATA_STORE_MAX_YIELD_TIME);
 
-	private static Future<?> getWordsTask;
-	private static CancellationSignal getWordsCancellationSignal = new CancellationSignal();
+	private static final WordQueryScheduler wordQueries = new WordQueryScheduler(interactiveLane);
+
+	private static CancellationSignal prefetchCancellationSignal = new CancellationSignal();
 
 	private static WordPairStore pairs;
 	private static WordStore words;
@@ -41,7 +45,12 @@ public class DataStore {
 
 
 	private static void runInThread(@NonNull Runnable action) {
-		executor.submit(action);
+		backgroundLane.execute(action);
+	}
+
+
+	private static void runInteractive(@NonNull Runnable action) {
+		interactiveLane.execute(action);
 	}
 
 
@@ -65,6 +74,16 @@ public class DataStore {
 	}
 
 
+	public static void countNextLanguage() {
+		runInThread(() -> words.countNextLanguage());
+	}
+
+
+	public static void createNextLookupIndex() {
+		runInThread(() -> words.createNextLookupIndex());
+	}
+
+
 	public static void getLastLanguageUpdateTime(ConsumerCompat<String> notification, Language language) {
 		runInThread(() -> notification.accept(words.getLanguageFileHash(language)));
 	}
@@ -83,46 +102,96 @@ public class DataStore {
 	}
 
 
+	/**
+	 * The new frequency is saved later, together with the other accepted words, by saveTopWords().
+	 * Until then, the word is only moved to the top of the suggestions in memory.
+	 */
 	public static void makeTopWord(@NonNull Language language, @NonNull String word, @NonNull String sequence) {
-		runInThread(() -> words.makeTopWord(language, word, sequence));
+		if (TopWordJournal.add(language, word, sequence)) {
+			saveTopWords();
+		}
 	}
 
 
+	public static void saveTopWords() {
+		runInThread(() -> words.saveTopWords());
+	}
+
+
+	/**
+	 * Loads the suggestions for the given sequence. When the query is slow, "dataHandler" is called
+	 * twice: first with the exact matches only, then with all suggestions.
+	 */
 	public static void getWords(ConsumerCompat<ArrayList<String>> dataHandler, Language language, String sequence, String filter, int minWords, int maxWords) {
-		if (getWordsTask != null && !getWordsTask.isDone()) {
-			dataHandler.accept(new ArrayList<>());
-			getWordsCancellationSignal.cancel();
-			return;
+		prefetchCancellationSignal.cancel();
+
+		final int traceId = Tracing.getCurrentId();
+		final long submitTime = Tracing.now();
+
+		WordQueryScheduler.Query exactMatchesQuery = null;
+		if ((filter == null || filter.isEmpty()) && sequence != null && sequence.length() > 1) {
+			exactMatchesQuery = (cancel) -> words.getExactMatches(cancel, language, sequence, maxWords);
 		}
 
-		getWordsCancellationSignal = new CancellationSignal();
-		getWordsTask = executor.submit(() -> getWordsSync(dataHandler, language, sequence, filter, minWords, maxWords));
-		executor.submit(DataStore::setGetWordsTimeout);
+		wordQueries.submit(
+			(cancel) -> {
+				Tracing.endSpan(traceId, "DataStore.wait", submitTime);
+				long start = Tracing.now();
+				ArrayList<String> data = words.getMany(cancel, language, sequence, filter, minWords, maxWords);
+				Tracing.endSpan(traceId, "DataStore.getWords", start);
+				return data;
+			},
+			exactMatchesQuery,
+			(exactMatches) -> asyncReturn.post(() -> dataHandler.accept(exactMatches)),
+			(data) -> asyncReturn.post(() -> {
+				dataHandler.accept(data);
+				prefetchWords(language, sequence, filter, minWords, maxWords);
+				explainSlowQueries();
+			})
+		);
 	}
 
 
-	private static void getWordsSync(ConsumerCompat<ArrayList<String>> dataHandler, Language language, String sequence, String filter, int minWords, int maxWords) {
-		try {
-			ArrayList<String> data = words.getMany(getWordsCancellationSignal, language, sequence, filter, minWords, maxWords);
-			asyncReturn.post(() -> dataHandler.accept(data));
-		} catch (Exception e) {
-			Logger.e(LOG_TAG, "Error fetching words: " + e.getMessage());
+	private static void explainSlowQueries() {
+		if (SlowQueryStats.hasUnexplainedProfiles()) {
+			runInThread(() -> {
+				while (SlowQueryStats.hasUnexplainedProfiles()) {
+					words.explainNextSlowQuery();
+				}
+			});
 		}
 	}
 
 
-	private static void setGetWordsTimeout() {
-		try {
-			getWordsTask.get(SettingsStore.SLOW_QUERY_TIMEOUT, TimeUnit.MILLISECONDS);
-		} catch (Exception e) {
-			getWordsCancellationSignal.cancel();
-			Logger.e(LOG_TAG, "Word loading timed out after " + SettingsStore.SLOW_QUERY_TIMEOUT + " ms.");
+	/**
+	 * Once the current suggestions are displayed, loads the words for all possible next keys (2-9)
+	 * in the background, while the user is thinking about the next key press. The results end up in
+	 * the query cache, so that the next getWords() call returns them immediately. The prefetching
+	 * stops as soon as getWords() is called again. Filtered queries are not prefetched, because the
+	 * filter usually changes together with the sequence.
+	 */
+	private static void prefetchWords(Language language, String sequence, String filter, int minWords, int maxWords) {
+		if (language == null || sequence == null || sequence.isEmpty() || (filter != null && !filter.isEmpty()) || wordQueries.isBusy()) {
+			return;
 		}
+
+		prefetchCancellationSignal.cancel();
+		final CancellationSignal cancel = prefetchCancellationSignal = new CancellationSignal();
+
+		prefetchLane.execute(() -> {
+			for (char key = '2'; key <= '9' && !cancel.isCanceled(); key++) {
+				try {
+					words.getMany(cancel, language, sequence + key, "", minWords, maxWords);
+				} catch (Exception e) {
+					Logger.w(LOG_TAG, "Error prefetching words for sequence: " + sequence + key + ". " + e.getMessage());
+				}
+			}
+		});
 	}
 
 
 	public static void getCustomWords(ConsumerCompat<ArrayList<String>> dataHandler, String wordFilter, int maxWords) {
-		runInThread(() -> {
+		runInteractive(() -> {
 			ArrayList<String> data = words.getSimilarCustom(wordFilter, maxWords);
 			asyncReturn.post(() -> dataHandler.accept(data));
 		});
@@ -130,7 +199,7 @@ public class DataStore {
 
 
 	public static void countCustomWords(ConsumerCompat<Long> dataHandler) {
-		runInThread(() -> {
+		runInteractive(() -> {
 			long data = words.countCustom();
 			asyncReturn.post(() -> dataHandler.accept(data));
 		});
@@ -138,13 +207,21 @@ public class DataStore {
 
 
 	public static void exists(ConsumerCompat<ArrayList<Integer>> dataHandler, ArrayList<Language> languages) {
-		runInThread(() -> {
+		runInteractive(() -> {
 			ArrayList<Integer> data = words.exists(languages);
 			asyncReturn.post(() -> dataHandler.accept(data));
 		});
 	}
 
 
+	public static void getTableSizes(ConsumerCompat<String> dataHandler, ArrayList<Language> languages) {
+		runInThread(() -> {
+			String data = words.getTableSizes(languages);
+			asyncReturn.post(() -> dataHandler.accept(data));
+		});
+	}
+
+
 	public static void addWordPair(Language language, String word1, String word2, String sequence2) {
 		pairs.add(language, word1, word2, sequence2);
 	}
@@ -155,6 +232,11 @@ public class DataStore {
 	}
 
 
+	public static void saveHotPositions() {
+		runInThread(HotPositionsCache::save);
+	}
+
+
 	public static void saveWordPairs() {
 		runInThread(() -> pairs.save());
 	}
@@ -175,6 +257,23 @@ public class DataStore {
 	}
 
 
+	public static String getWordQueryStats() {
+		return
+			wordQueries.getSummary() +
+			"\n" + interactiveLane.getSummary() +
+			"\n" + prefetchLane.getSummary() +
+			"\n" + backgroundLane.getSummary();
+	}
+
+
+	public static void resetWordQueryStats() {
+		wordQueries.resetStats();
+		interactiveLane.resetStats();
+		prefetchLane.resetStats();
+		backgroundLane.resetStats();
+	}
+
+
 	public static String getWordPairStats() {
 		return pairs.toString();
 	}
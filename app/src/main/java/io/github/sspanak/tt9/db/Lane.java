@@ -0,0 +1,119 @@
+package io.github.sspanak.tt9.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.github.sspanak.tt9.util.Logger;
+
+/**
+ * A single thread for running database tasks of the same kind, one after another. A lane can be set
+ * to yield to a more important one. Then, before starting each task, it waits for the other lane to
+ * become idle, but no longer than the given time, so that it still makes progress when the other
+ * lane is constantly busy.
+ */
+class Lane implements Executor {
+	private static final String LOG_TAG = Lane.class.getSimpleName();
+
+	@NonNull private final String name;
+	@NonNull private final ExecutorService executor;
+	@Nullable private final Lane yieldTo;
+	private final long maxYieldTime;
+
+	private int activeTasks = 0;
+
+	private long tasks = 0;
+	private long totalQueueTime = 0;
+	private long maxQueueTime = 0;
+	private long totalRunTime = 0;
+	private long maxRunTime = 0;
+
+
+	Lane(@NonNull String name, int threadPriority) {
+		this(name, threadPriority, null, 0);
+	}
+
+
+	Lane(@NonNull String name, int threadPriority, @Nullable Lane yieldTo, long maxYieldTime) {
+		this.name = name;
+		this.yieldTo = yieldTo;
+		this.maxYieldTime = maxYieldTime;
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name + "Lane");
+			thread.setPriority(threadPriority);
+			return thread;
+		});
+	}
+
+
+	@Override
+	public void execute(@NonNull Runnable task) {
+		final long queueStart = System.currentTimeMillis();
+		synchronized (this) {
+			activeTasks++;
+		}
+
+		executor.execute(() -> {
+			if (yieldTo != null) {
+				yieldTo.awaitIdle(maxYieldTime);
+			}
+
+			final long runStart = System.currentTimeMillis();
+			try {
+				task.run();
+			} catch (Exception e) {
+				Logger.e(LOG_TAG, "Unhandled error in lane: " + name + ". " + e.getMessage());
+			} finally {
+				onTaskFinished(runStart - queueStart, System.currentTimeMillis() - runStart);
+			}
+		});
+	}
+
+
+	private synchronized void onTaskFinished(long queueTime, long runTime) {
+		tasks++;
+		totalQueueTime += queueTime;
+		maxQueueTime = Math.max(maxQueueTime, queueTime);
+		totalRunTime += runTime;
+		maxRunTime = Math.max(maxRunTime, runTime);
+
+		if (--activeTasks == 0) {
+			notifyAll();
+		}
+	}
+
+
+	synchronized boolean isBusy() {
+		return activeTasks > 0;
+	}
+
+
+	private synchronized void awaitIdle(long timeout) {
+		final long deadline = System.currentTimeMillis() + timeout;
+		for (long remaining = timeout; activeTasks > 0 && remaining > 0; remaining = deadline - System.currentTimeMillis()) {
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+
+	@NonNull
+	synchronized String getSummary() {
+		return
+			name + " lane tasks: " + tasks + ". Queued: " + activeTasks +
+			"\nQueue time: " + (tasks > 0 ? totalQueueTime / tasks : 0) + " ms (max: " + maxQueueTime + " ms)" +
+			". Run time: " + (tasks > 0 ? totalRunTime / tasks : 0) + " ms (max: " + maxRunTime + " ms)";
+	}
+
+
+	synchronized void resetStats() {
+		tasks = totalQueueTime = maxQueueTime = totalRunTime = maxRunTime = 0;
+	}
+}
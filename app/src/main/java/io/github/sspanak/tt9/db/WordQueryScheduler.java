@@ -0,0 +1,214 @@
+package io.github.sspanak.tt9.db;
+
+import android.os.CancellationSignal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+import io.github.sspanak.tt9.util.ConsumerCompat;
+import io.github.sspanak.tt9.util.Logger;
+import io.github.sspanak.tt9.util.Metrics;
+
+/**
+ * Runs the suggestion queries one at a time, on the given single-thread executor. Only the latest
+ * query matters, because the user has already pressed another key, so when a new one arrives, the
+ * waiting query is dropped and the running one is cancelled. Their callers never receive any results
+ * and the latest query runs as soon as the thread is free.
+ *
+ * The slow queries are cancelled by a timer, instead of a separate thread waiting for each one.
+ *
+ * A request may also have a partial query, which is cheaper, for example, one that finds only the
+ * exact matches. It starts only when the main query takes longer than the latency budget, and runs
+ * in parallel on a separate thread, so it never delays the fast queries. Its results are passed
+ * to the caller only if the main query is still running, so that the user sees some suggestions
+ * quickly. The complete results replace them later.
+ */
+class WordQueryScheduler {
+	private static final String LOG_TAG = WordQueryScheduler.class.getSimpleName();
+
+	@NonNull private final Executor executor;
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "WordQueryTimeout"));
+	private final Executor partialExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "WordQueryPartial"));
+
+	@Nullable private Request pending;
+	@Nullable private Request running;
+
+	private long completed = 0;
+	private long partialResults = 0;
+	private long superseded = 0;
+	private long timeouts = 0;
+	private int maxQueueDepth = 0;
+	private long totalWaitTime = 0;
+	private long maxWaitTime = 0;
+
+
+	WordQueryScheduler(@NonNull Executor executor) {
+		this.executor = executor;
+	}
+
+
+	interface Query {
+		ArrayList<String> run(@NonNull CancellationSignal cancel);
+	}
+
+
+	private static class Request {
+		@NonNull private final Query query;
+		@Nullable private final Query partialQuery;
+		@NonNull private final ConsumerCompat<ArrayList<String>> onPartialResult;
+		@NonNull private final ConsumerCompat<ArrayList<String>> onResult;
+		@NonNull private final CancellationSignal cancel = new CancellationSignal();
+		@NonNull private final CancellationSignal partialCancel = new CancellationSignal();
+		private final long submitTime = System.currentTimeMillis();
+		private boolean isDone = false;
+		private boolean isSuperseded = false;
+
+		private Request(@NonNull Query query, @Nullable Query partialQuery, @NonNull ConsumerCompat<ArrayList<String>> onPartialResult, @NonNull ConsumerCompat<ArrayList<String>> onResult) {
+			this.query = query;
+			this.partialQuery = partialQuery;
+			this.onPartialResult = onPartialResult;
+			this.onResult = onResult;
+		}
+
+		private void cancel() {
+			cancel.cancel();
+			partialCancel.cancel();
+		}
+	}
+
+
+	/**
+	 * Schedules the query to run as soon as possible. The results are passed to "onResult" on the
+	 * query thread, unless a newer query has been submitted in the meantime. If the query is slow,
+	 * "partialQuery" is started and "onPartialResult" may be called before that, with its results.
+	 */
+	synchronized void submit(@NonNull Query query, @Nullable Query partialQuery, @NonNull ConsumerCompat<ArrayList<String>> onPartialResult, @NonNull ConsumerCompat<ArrayList<String>> onResult) {
+		if (pending != null) {
+			superseded++;
+		}
+
+		if (running != null && !running.isSuperseded) {
+			running.isSuperseded = true;
+			running.cancel();
+			superseded++;
+		}
+
+		pending = new Request(query, partialQuery, onPartialResult, onResult);
+		maxQueueDepth = Math.max(maxQueueDepth, running != null ? 2 : 1);
+		executor.execute(this::runNext);
+	}
+
+
+	synchronized boolean isBusy() {
+		return pending != null || running != null;
+	}
+
+
+	private void runNext() {
+		final Request request;
+		synchronized (this) {
+			request = pending;
+			pending = null;
+			running = request;
+			if (request == null) {
+				return; // already executed by a previous call
+			}
+
+			long waitTime = System.currentTimeMillis() - request.submitTime;
+			totalWaitTime += waitTime;
+			maxWaitTime = Math.max(maxWaitTime, waitTime);
+		}
+
+		ScheduledFuture<?> timeout = timer.schedule(() -> onTimeout(request), SettingsStore.SLOW_QUERY_TIMEOUT, TimeUnit.MILLISECONDS);
+		ScheduledFuture<?> budget = timer.schedule(() -> onBudgetExceeded(request), SettingsStore.SUGGESTIONS_LATENCY_BUDGET, TimeUnit.MILLISECONDS);
+		ArrayList<String> words = null;
+		long start = Metrics.now();
+
+		try {
+			words = request.query.run(request.cancel);
+		} catch (Exception e) {
+			Logger.e(LOG_TAG, "Error fetching words: " + e.getMessage());
+		} finally {
+			budget.cancel(false);
+			timeout.cancel(false);
+			request.partialCancel.cancel();
+			Metrics.recordSince("query.total", start);
+		}
+
+		boolean isStale;
+		synchronized (this) {
+			running = null;
+			completed++;
+			request.isDone = true;
+			isStale = request.isSuperseded;
+		}
+
+		if (words != null && !isStale) {
+			request.onResult.accept(words);
+		}
+	}
+
+
+	private synchronized void onBudgetExceeded(@NonNull Request request) {
+		if (request.partialQuery != null && !request.isDone && !request.isSuperseded) {
+			partialExecutor.execute(() -> runPartial(request));
+		}
+	}
+
+
+	/**
+	 * Runs the partial query and sends its results, only before the complete results, so that the
+	 * caller receives them in the correct order.
+	 */
+	private void runPartial(@NonNull Request request) {
+		ArrayList<String> words = null;
+
+		try {
+			if (request.partialQuery != null && !request.partialCancel.isCanceled()) {
+				words = request.partialQuery.run(request.partialCancel);
+			}
+		} catch (Exception e) {
+			Logger.e(LOG_TAG, "Error fetching partial words: " + e.getMessage());
+		}
+
+		synchronized (this) {
+			if (words == null || words.isEmpty() || request.isDone || request.isSuperseded) {
+				return;
+			}
+
+			partialResults++;
+			request.onPartialResult.accept(words);
+		}
+	}
+
+
+	private void onTimeout(@NonNull Request request) {
+		synchronized (this) {
+			timeouts++;
+		}
+		request.cancel();
+		Logger.e(LOG_TAG, "Word loading timed out after " + SettingsStore.SLOW_QUERY_TIMEOUT + " ms.");
+	}
+
+
+	@NonNull
+	synchronized String getSummary() {
+		return
+			"Word queries: " + completed + ". Partial: " + partialResults + ". Superseded: " + superseded + ". Timed out: " + timeouts +
+			"\nMax queue depth: " + maxQueueDepth + ". Wait time: " + (completed > 0 ? totalWaitTime / completed : 0) + " ms (max: " + maxWaitTime + " ms)";
+	}
+
+
+	synchronized void resetStats() {
+		completed = partialResults = superseded = timeouts = totalWaitTime = maxWaitTime = 0;
+		maxQueueDepth = 0;
+	}
+}
@@ -15,6 +15,7 @@ import io.github.sspanak.tt9.db.entities.CustomWordFile;
 import io.github.sspanak.tt9.db.sqlite.InsertOps;
 import io.github.sspanak.tt9.db.sqlite.ReadOps;
 import io.github.sspanak.tt9.db.sqlite.SQLiteOpener;
+import io.github.sspanak.tt9.db.words.QueryCache;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
 import io.github.sspanak.tt9.util.ConsumerCompat;
 import io.github.sspanak.tt9.util.Logger;
@@ -146,6 +147,7 @@ public class CustomWordsImporter extends AbstractFileProcessor {
 			}
 
 			sqlite.finishTransaction();
+			QueryCache.clear();
 		} catch (IOException e) {
 			sqlite.failTransaction();
 			Logger.e(getClass().getSimpleName(), "Error opening the file. " + e.getMessage());
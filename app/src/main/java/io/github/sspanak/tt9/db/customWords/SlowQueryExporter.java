@@ -0,0 +1,61 @@
+package io.github.sspanak.tt9.db.customWords;
+
+import android.app.Activity;
+
+import androidx.annotation.NonNull;
+
+import io.github.sspanak.tt9.db.words.SlowQueryStats;
+
+public class SlowQueryExporter extends AbstractExporter {
+	private static SlowQueryExporter self;
+	private final String BASE_FILE_NAME;
+
+
+	public SlowQueryExporter() {
+		super();
+		BASE_FILE_NAME = "tt9-slow-queries-";
+		FILE_EXTENSION = ".txt";
+		MIME_TYPE = "text/plain";
+	}
+
+
+	public static SlowQueryExporter getInstance() {
+		if (self == null) {
+			self = new SlowQueryExporter();
+		}
+		return self;
+	}
+
+
+	@Override
+	protected void runSync(Activity activity) {
+		try {
+			sendStart("Exporting slow queries...");
+			write(activity);
+			sendSuccess();
+		} catch (Exception e) {
+			sendFailure();
+		}
+	}
+
+
+	@NonNull
+	@Override
+	protected String generateFileName() {
+		return BASE_FILE_NAME + System.currentTimeMillis() + FILE_EXTENSION;
+	}
+
+
+	@NonNull
+	@Override
+	protected byte[] getFileContents(Activity activity) {
+		return (SlowQueryStats.getSummary() + "\n\n" + getProfiles()).getBytes();
+	}
+
+
+	@NonNull
+	public static String getProfiles() {
+		String profiles = SlowQueryStats.getProfiles();
+		return profiles.isEmpty() ? "No slow query plans. They are recorded only at the Debug log level." : profiles;
+	}
+}
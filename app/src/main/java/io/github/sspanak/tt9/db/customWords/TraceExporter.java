@@ -0,0 +1,54 @@
+package io.github.sspanak.tt9.db.customWords;
+
+import android.app.Activity;
+
+import androidx.annotation.NonNull;
+
+import io.github.sspanak.tt9.util.Tracing;
+
+public class TraceExporter extends AbstractExporter {
+	private static TraceExporter self;
+	private final String BASE_FILE_NAME;
+
+
+	public TraceExporter() {
+		super();
+		BASE_FILE_NAME = "tt9-traces-";
+		FILE_EXTENSION = ".json";
+		MIME_TYPE = "application/json";
+	}
+
+
+	public static TraceExporter getInstance() {
+		if (self == null) {
+			self = new TraceExporter();
+		}
+		return self;
+	}
+
+
+	@Override
+	protected void runSync(Activity activity) {
+		try {
+			sendStart("Exporting traces...");
+			write(activity);
+			sendSuccess();
+		} catch (Exception e) {
+			sendFailure();
+		}
+	}
+
+
+	@NonNull
+	@Override
+	protected String generateFileName() {
+		return BASE_FILE_NAME + System.currentTimeMillis() + FILE_EXTENSION;
+	}
+
+
+	@NonNull
+	@Override
+	protected byte[] getFileContents(Activity activity) {
+		return Tracing.toJson().getBytes();
+	}
+}
@@ -0,0 +1,97 @@
+package io.github.sspanak.tt9.db.entities;
+
+import android.content.res.AssetManager;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.util.AssetFile;
+import io.github.sspanak.tt9.util.Logger;
+
+/**
+ * The changes between the previous versions of a dictionary and the current one, generated at build
+ * time next to the zipped dictionary (see: build-dictionaries.gradle). The format is:
+ *   from: <hash of an older version>   (one line for each version the changes can be applied to)
+ *   to: <hash of the current version>
+ *   <sequence> <word1> <word2> ...      (one line for each changed sequence, no words when removed)
+ *
+ * Each line contains all words of the sequence in the new order, not only the changed ones, so
+ * applying the same lines to any of the older versions results in the current one.
+ */
+public class DictionaryDelta extends AssetFile {
+	private static final String LOG_TAG = DictionaryDelta.class.getSimpleName();
+
+	@NonNull private final HashSet<String> fromHashes = new HashSet<>();
+	@NonNull private final LinkedHashMap<String, ArrayList<String>> sequences = new LinkedHashMap<>();
+	@NonNull private String toHash = "";
+	private boolean isLoaded = false;
+
+
+	public DictionaryDelta(@NonNull AssetManager assets, @NonNull Language language) {
+		super(assets, language.getDictionaryFile().replaceFirst("\\.\\w+$", ".delta.txt"));
+	}
+
+
+	/**
+	 * Checks if the changes lead from the given imported version to the given current version.
+	 */
+	public boolean canUpdate(@NonNull String importedHash, @NonNull String currentHash) {
+		load();
+		return !importedHash.isEmpty() && fromHashes.contains(importedHash) && toHash.equals(currentHash);
+	}
+
+
+	@NonNull
+	public LinkedHashMap<String, ArrayList<String>> getSequences() {
+		load();
+		return sequences;
+	}
+
+
+	private void load() {
+		if (isLoaded) {
+			return;
+		}
+
+		isLoaded = true;
+		if (!exists()) {
+			return;
+		}
+
+		try (BufferedReader reader = getReader()) {
+			for (String line; (line = reader.readLine()) != null; ) {
+				if (line.startsWith("from:")) {
+					fromHashes.add(line.substring(5).trim());
+				} else if (line.startsWith("to:")) {
+					toHash = line.substring(3).trim();
+				} else if (!line.isEmpty()) {
+					addSequence(line);
+				}
+			}
+		} catch (IOException e) {
+			Logger.w(LOG_TAG, "Could not read: " + path + ". " + e.getMessage());
+			fromHashes.clear();
+			sequences.clear();
+			toHash = "";
+		}
+	}
+
+
+	private void addSequence(@NonNull String line) {
+		String[] parts = line.split(" ");
+		ArrayList<String> words = new ArrayList<>(parts.length - 1);
+		for (int i = 1; i < parts.length; i++) {
+			if (!parts[i].isEmpty()) {
+				words.add(parts[i]);
+			}
+		}
+
+		sequences.put(parts[0], words);
+	}
+}
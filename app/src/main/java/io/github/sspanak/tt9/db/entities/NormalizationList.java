@@ -3,7 +3,7 @@ package io.github.sspanak.tt9.db.entities;
 import java.util.regex.Pattern;
 
 public class NormalizationList {
-	private final static Pattern validPositions = Pattern.compile("^[0-9,]+\\d|\\d+$");
+	private final static Pattern validPositions = Pattern.compile("^-?\\d+(:-?\\d+)?(,-?\\d+(:-?\\d+)?)*$");
 
 	public int langId = -1;
 	public String positions = null;
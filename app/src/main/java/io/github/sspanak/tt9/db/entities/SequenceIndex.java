@@ -0,0 +1,276 @@
+package io.github.sspanak.tt9.db.entities;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * An in-memory copy of the "word_positions" table, which maps digit sequences to word position
+ * ranges. The sequences are stored sorted and packed into a single byte array, so all sequences
+ * starting with a given prefix form a continuous block, just like the children of a trie node.
+ * This allows finding the positions for a sequence and all its descendants with a couple of
+ * binary searches, instead of running an SQL query on every key press.
+ * The data can be either loaded from the database or memory-mapped from a binary dictionary file.
+ */
+public class SequenceIndex {
+	@NonNull private final ByteBuffer sequences;
+	@NonNull private final IntBuffer offsets;
+	@NonNull private final IntBuffer starts;
+	@NonNull private final IntBuffer ends;
+	private final int letterKeys;
+	private final int positionShift;
+	private final int size;
+	private final boolean isMapped;
+
+
+	/**
+	 * "letterKeys" is a bit mask of the keys, which have letters on them. The letters are stored
+	 * at positions equal to their key number (2-9), so they are not part of the precompiled index
+	 * files and must be added at query time. "positionShift" is added to all other positions.
+	 */
+	SequenceIndex(@NonNull ByteBuffer sequences, @NonNull IntBuffer offsets, @NonNull IntBuffer starts, @NonNull IntBuffer ends, int size, int letterKeys, int positionShift, boolean isMapped) {
+		this.sequences = sequences;
+		this.offsets = offsets;
+		this.starts = starts;
+		this.ends = ends;
+		this.letterKeys = letterKeys;
+		this.positionShift = positionShift;
+		this.size = size;
+		this.isMapped = isMapped;
+	}
+
+
+	/**
+	 * Builds the index from a cursor with rows: (sequence, start, end). The rows must be sorted
+	 * by sequence in ascending order.
+	 */
+	@NonNull
+	public static SequenceIndex fromDbRanges(@NonNull Cursor cursor) {
+		final int rows = cursor.getCount();
+		int[] offsets = new int[rows + 1];
+		int[] starts = new int[rows];
+		int[] ends = new int[rows];
+		byte[] sequences = new byte[rows * 8];
+
+		int size = 0;
+		int length = 0;
+		while (size < rows && cursor.moveToNext()) {
+			String sequence = cursor.getString(0);
+
+			if (length + sequence.length() > sequences.length) {
+				byte[] larger = new byte[Math.max(sequences.length * 2, length + sequence.length())];
+				System.arraycopy(sequences, 0, larger, 0, length);
+				sequences = larger;
+			}
+
+			for (int i = 0; i < sequence.length(); i++) {
+				sequences[length++] = (byte) sequence.charAt(i);
+			}
+
+			starts[size] = cursor.getInt(1);
+			ends[size] = cursor.getInt(2);
+			offsets[++size] = length;
+		}
+
+		return new SequenceIndex(ByteBuffer.wrap(sequences), IntBuffer.wrap(offsets), IntBuffer.wrap(starts), IntBuffer.wrap(ends), size, 0, 0, false);
+	}
+
+
+	public int size() {
+		return size;
+	}
+
+
+	/**
+	 * Approximate memory usage in bytes. Memory-mapped indexes do not occupy any heap memory.
+	 */
+	public long getMemorySize() {
+		return isMapped ? 0 : sequences.capacity() + (long) (offsets.capacity() + starts.capacity() + ends.capacity()) * Integer.BYTES;
+	}
+
+
+	public boolean isMapped() {
+		return isMapped;
+	}
+
+
+	/**
+	 * Appends the positions of the given sequence and its descendants to the output. The meaning of
+	 * "generations" and "limit" is the same as in the SQL queries in ReadOps:
+	 * - generations < 10: the sequence itself and all descendants up to "generations" digits
+	 * longer, which do not start or end with "0".
+	 * - generations >= 10: the sequence itself and the lexicographic range from "sequence1" to
+	 * "sequence9" (or "sequence999999" for unlimited generations). Only the "limit" ranges with
+	 * the lowest start positions are included.
+	 */
+	public void appendPositions(@NonNull WordPositionsStringBuilder positions, @NonNull String sequence, int generations, int limit) {
+		if (generations >= 0 && generations < 10) {
+			appendDescendants(positions, sequence, generations);
+		} else {
+			appendLowestInRange(positions, sequence, generations == 10 ? "9" : "999999", limit);
+		}
+	}
+
+
+	private void appendDescendants(@NonNull WordPositionsStringBuilder positions, @NonNull String sequence, int generations) {
+		final int maxLength = sequence.length() + generations;
+
+		if (sequence.length() == 1 && hasLetters(sequence.charAt(0))) {
+			positions.append(sequence.charAt(0) - '0', sequence.charAt(0) - '0');
+		}
+
+		for (int i = lowerBound(sequence), prefixEnd = upperBoundPrefix(sequence); i < prefixEnd; i++) {
+			final int length = offsets.get(i + 1) - offsets.get(i);
+			if (length == sequence.length()) {
+				appendRow(positions, i);
+			} else if (
+				length <= maxLength
+				&& sequences.get(offsets.get(i) + sequence.length()) != '0'
+				&& sequences.get(offsets.get(i + 1) - 1) != '0'
+			) {
+				appendRow(positions, i);
+			}
+		}
+	}
+
+
+	private void appendLowestInRange(@NonNull WordPositionsStringBuilder positions, @NonNull String sequence, @NonNull String rangeEnd, int limit) {
+		if (sequence.length() == 1 && hasLetters(sequence.charAt(0)) && limit > 0) {
+			// the letters have the lowest positions, so they are always included first
+			positions.append(sequence.charAt(0) - '0', sequence.charAt(0) - '0');
+			limit--;
+		}
+
+		if (limit <= 0) {
+			return;
+		}
+
+		// keep the "limit" rows with the lowest start positions, the same as: ORDER BY start LIMIT x
+		PriorityQueue<Integer> lowest = new PriorityQueue<>(Math.min(limit, 64), (a, b) -> Integer.compare(starts.get(b), starts.get(a)));
+
+		for (int i = lowerBound(sequence), end = upperBound(sequence); i < end; i++) {
+			addToLowest(lowest, i, limit);
+		}
+
+		for (int i = lowerBound(sequence + "1"), end = upperBound(sequence + rangeEnd); i < end; i++) {
+			addToLowest(lowest, i, limit);
+		}
+
+		Integer[] rows = lowest.toArray(new Integer[0]);
+		Arrays.sort(rows, (a, b) -> Integer.compare(starts.get(a), starts.get(b)));
+		for (int row : rows) {
+			appendRow(positions, row);
+		}
+	}
+
+
+	private boolean hasLetters(char key) {
+		return key >= '2' && key <= '9' && (letterKeys & (1 << (key - '0'))) != 0;
+	}
+
+
+	private void appendRow(@NonNull WordPositionsStringBuilder positions, int row) {
+		positions.append(starts.get(row) + positionShift, ends.get(row) + positionShift);
+	}
+
+
+	private void addToLowest(@NonNull PriorityQueue<Integer> lowest, int row, int limit) {
+		if (lowest.size() < limit) {
+			lowest.add(row);
+		} else if (starts.get(row) < starts.get(lowest.peek())) {
+			lowest.poll();
+			lowest.add(row);
+		}
+	}
+
+
+	/**
+	 * Returns the first row, which is not less than the given sequence.
+	 */
+	private int lowerBound(@NonNull String sequence) {
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(mid, sequence) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * Returns the first row, which is greater than the given sequence.
+	 */
+	private int upperBound(@NonNull String sequence) {
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(mid, sequence) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+
+	/**
+	 * Returns the first row, which does not start with the given prefix and is greater than it.
+	 */
+	private int upperBoundPrefix(@NonNull String prefix) {
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparePrefix(mid, prefix) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+
+	private int compare(int row, @NonNull String sequence) {
+		final int start = offsets.get(row);
+		final int length = offsets.get(row + 1) - start;
+		final int minLength = Math.min(length, sequence.length());
+
+		for (int i = 0; i < minLength; i++) {
+			int diff = sequences.get(start + i) - sequence.charAt(i);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+
+		return length - sequence.length();
+	}
+
+
+	/**
+	 * Same as compare(), but considers the rows starting with the prefix equal to it.
+	 */
+	private int comparePrefix(int row, @NonNull String prefix) {
+		final int start = offsets.get(row);
+		final int length = offsets.get(row + 1) - start;
+		final int minLength = Math.min(length, prefix.length());
+
+		for (int i = 0; i < minLength; i++) {
+			int diff = sequences.get(start + i) - prefix.charAt(i);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+
+		return length >= prefix.length() ? 0 : -1;
+	}
+}
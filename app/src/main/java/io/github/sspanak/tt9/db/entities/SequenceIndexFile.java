@@ -0,0 +1,131 @@
+package io.github.sspanak.tt9.db.entities;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import io.github.sspanak.tt9.BuildConfig;
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.util.AssetFile;
+import io.github.sspanak.tt9.util.Logger;
+
+/**
+ * A precompiled copy of the "word_positions" table, generated at build time next to each dictionary
+ * file (see: build-dictionaries.gradle). It is memory-mapped directly from the APK, so the index is
+ * available immediately and does not use any heap memory. The file is only valid for the dictionary
+ * with the same hash, because the positions depend on the word order during import.
+ */
+public class SequenceIndexFile extends AssetFile {
+	private static final String LOG_TAG = SequenceIndexFile.class.getSimpleName();
+	private static final int MAGIC = 0x54543949; // "TT9I"
+	private static final int VERSION = 1;
+
+	@NonNull private final Language language;
+
+
+	public SequenceIndexFile(@NonNull AssetManager assets, @NonNull Language language) {
+		super(assets, language.getDictionaryFile().replaceFirst("\\.\\w+$", "." + BuildConfig.DICTIONARY_INDEX_EXTENSION));
+		this.language = language;
+	}
+
+
+	/**
+	 * Maps the file in memory and returns the index. Returns null when the file does not exist,
+	 * is compressed in the APK, is corrupted or was generated for a different dictionary version.
+	 */
+	@Nullable
+	public SequenceIndex map(@NonNull String expectedHash) {
+		if (expectedHash.isEmpty() || !exists()) {
+			return null;
+		}
+
+		try (AssetFileDescriptor descriptor = assets.openFd(path); FileInputStream stream = descriptor.createInputStream()) {
+			ByteBuffer buffer = stream.getChannel().map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength());
+			return read(buffer, expectedHash);
+		} catch (IOException | RuntimeException e) {
+			Logger.w(LOG_TAG, "Could not map: '" + path + "'. " + e.getMessage());
+			return null;
+		}
+	}
+
+
+	@Nullable
+	private SequenceIndex read(@NonNull ByteBuffer buffer, @NonNull String expectedHash) {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			Logger.w(LOG_TAG, "Unrecognized index file format: '" + path + "'");
+			return null;
+		}
+
+		byte[] hash = new byte[buffer.getInt()];
+		buffer.get(hash);
+		buffer.position(buffer.position() + (4 - hash.length % 4) % 4);
+		if (!expectedHash.equals(new String(hash, StandardCharsets.UTF_8))) {
+			Logger.d(LOG_TAG, "Index file: '" + path + "' does not match the imported dictionary. Ignoring it.");
+			return null;
+		}
+
+		final int size = buffer.getInt();
+		final int sequenceBytes = buffer.getInt();
+		if (size < 0 || sequenceBytes < 0 || buffer.remaining() != (3 * size + 1) * Integer.BYTES + sequenceBytes) {
+			Logger.w(LOG_TAG, "Index file: '" + path + "' is corrupted.");
+			return null;
+		}
+
+		IntBuffer offsets = sliceInts(buffer, size + 1);
+		IntBuffer starts = sliceInts(buffer, size);
+		IntBuffer ends = sliceInts(buffer, size);
+		ByteBuffer sequences = buffer.slice();
+
+		return new SequenceIndex(sequences, offsets, starts, ends, size, getLetterKeys(), getLettersCount(), true);
+	}
+
+
+	@NonNull
+	private static IntBuffer sliceInts(@NonNull ByteBuffer buffer, int count) {
+		IntBuffer ints = buffer.slice().asIntBuffer();
+		ints.limit(count);
+		buffer.position(buffer.position() + count * Integer.BYTES);
+		return ints.slice();
+	}
+
+
+	/**
+	 * The letters are imported before the dictionary words, so the positions in the file must be
+	 * shifted by their count. Must be the same as in DictionaryLoader.importLetters().
+	 */
+	private int getLettersCount() {
+		if (language.isSyllabary()) {
+			return 0;
+		}
+
+		int count = 0;
+		for (int key = 2; key <= 9; key++) {
+			count += language.getKeyCharacters(key).size();
+		}
+
+		return count;
+	}
+
+
+	private int getLetterKeys() {
+		if (language.isSyllabary()) {
+			return 0;
+		}
+
+		int keys = 0;
+		for (int key = 2; key <= 9; key++) {
+			keys |= language.getKeyCharacters(key).isEmpty() ? 0 : 1 << key;
+		}
+
+		return keys;
+	}
+}
@@ -2,61 +2,188 @@ package io.github.sspanak.tt9.db.entities;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.languages.exceptions.InvalidLanguageCharactersException;
 
+/**
+ * A batch of words and word positions waiting to be inserted in the database. It is stored in
+ * columns of primitive arrays, and the characters of all words and sequences are in a single shared
+ * array, so adding words does not allocate any objects. Once inserted, the batch can be cleared and
+ * reused, and then the arrays are only reallocated if the next batch is larger.
+ */
 public class WordBatch {
 	@NonNull private final Language language;
-	@NonNull private final ArrayList<Word> words;
-	@NonNull private final ArrayList<WordPosition> positions;
+
+	@NonNull private char[] chars;
+	private int charsLength = 0;
+
+	@NonNull private int[] wordOffsets;
+	@NonNull private int[] wordLengths;
+	@NonNull private int[] frequencies;
+	@NonNull private int[] wordPositions;
+	private int size = 0;
+
+	@NonNull private int[] sequenceOffsets;
+	@NonNull private int[] sequenceLengths;
+	@NonNull private int[] starts;
+	@NonNull private int[] ends;
+	private int sequenceCount = 0;
+
 
 	public WordBatch(@NonNull Language language, int size) {
 		this.language = language;
-		words = size > 0 ? new ArrayList<>(size) : new ArrayList<>();
-		positions = size > 0 ? new ArrayList<>(size) : new ArrayList<>();
+
+		int capacity = Math.max(size, 16);
+		chars = new char[capacity * 8];
+		wordOffsets = new int[capacity];
+		wordLengths = new int[capacity];
+		frequencies = new int[capacity];
+		wordPositions = new int[capacity];
+		sequenceOffsets = new int[capacity];
+		sequenceLengths = new int[capacity];
+		starts = new int[capacity];
+		ends = new int[capacity];
 	}
 
 	public WordBatch(@NonNull Language language) {
 		this(language, 0);
 	}
 
+
 	public void add(String word, int frequency, int position) throws InvalidLanguageCharactersException {
-		words.add(Word.create(word, frequency, position));
-		positions.add(WordPosition.create(language.getDigitSequenceForWord(word), position, position));
+		String sequence = language.getDigitSequenceForWord(word);
+
+		ensureWordCapacity(1);
+		ensureSequenceCapacity(1);
+		ensureCharCapacity(word.length() + sequence.length());
+
+		addWord(word.toCharArray(), 0, word.length(), frequency, position);
+		addSequence(sequence.toCharArray(), 0, sequence.length(), position, position);
 	}
 
-	public void add(@NonNull ArrayList<String> words, @NonNull String digitSequence, int position) {
-		if (words.isEmpty() || digitSequence.isEmpty()) {
+
+	/**
+	 * Adds all words of a sequence, directly from the buffer of the parser (see: WordFile.next()).
+	 * The words must be ordered by frequency, so the first one gets the highest frequency.
+	 */
+	public void add(@NonNull char[] buffer, int sequenceStart, int sequenceEnd, @NonNull int[] wordStarts, @NonNull int[] wordEnds, int wordCount, int position) {
+		if (wordCount == 0 || sequenceStart == sequenceEnd) {
 			return;
 		}
 
-		for (int i = 0, size = words.size(); i < size; i++) {
-			this.words.add(Word.create(words.get(i), size - i, position + i));
+		int newChars = sequenceEnd - sequenceStart;
+		for (int i = 0; i < wordCount; i++) {
+			newChars += wordEnds[i] - wordStarts[i];
+		}
+
+		ensureWordCapacity(wordCount);
+		ensureSequenceCapacity(1);
+		ensureCharCapacity(newChars);
+
+		for (int i = 0; i < wordCount; i++) {
+			addWord(buffer, wordStarts[i], wordEnds[i] - wordStarts[i], wordCount - i, position + i);
 		}
 
 		if (position == 0) {
 			return;
 		}
 
-		positions.add(WordPosition.create(digitSequence, position, position + words.size() - 1));
+		addSequence(buffer, sequenceStart, sequenceEnd - sequenceStart, position, position + wordCount - 1);
+	}
+
+
+	private void addWord(@NonNull char[] buffer, int offset, int length, int frequency, int position) {
+		System.arraycopy(buffer, offset, chars, charsLength, length);
+		wordOffsets[size] = charsLength;
+		wordLengths[size] = length;
+		frequencies[size] = frequency;
+		wordPositions[size] = position;
+		charsLength += length;
+		size++;
+	}
+
+
+	private void addSequence(@NonNull char[] buffer, int offset, int length, int start, int end) {
+		System.arraycopy(buffer, offset, chars, charsLength, length);
+		sequenceOffsets[sequenceCount] = charsLength;
+		sequenceLengths[sequenceCount] = length;
+		starts[sequenceCount] = start;
+		ends[sequenceCount] = end;
+		charsLength += length;
+		sequenceCount++;
+	}
+
+
+	private void ensureCharCapacity(int extra) {
+		if (charsLength + extra > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charsLength + extra));
+		}
 	}
 
+
+	private void ensureWordCapacity(int extra) {
+		if (size + extra > wordOffsets.length) {
+			int capacity = Math.max(wordOffsets.length * 2, size + extra);
+			wordOffsets = Arrays.copyOf(wordOffsets, capacity);
+			wordLengths = Arrays.copyOf(wordLengths, capacity);
+			frequencies = Arrays.copyOf(frequencies, capacity);
+			wordPositions = Arrays.copyOf(wordPositions, capacity);
+		}
+	}
+
+
+	private void ensureSequenceCapacity(int extra) {
+		if (sequenceCount + extra > sequenceOffsets.length) {
+			int capacity = Math.max(sequenceOffsets.length * 2, sequenceCount + extra);
+			sequenceOffsets = Arrays.copyOf(sequenceOffsets, capacity);
+			sequenceLengths = Arrays.copyOf(sequenceLengths, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+		}
+	}
+
+
 	public void clear() {
-		words.clear();
-		positions.clear();
+		charsLength = 0;
+		size = 0;
+		sequenceCount = 0;
 	}
 
 	@NonNull public Language getLanguage() {
 		return language;
 	}
 
-	@NonNull public ArrayList<Word> getWords() {
-		return words;
+	public int size() {
+		return size;
+	}
+
+	@NonNull public String getWord(int i) {
+		return new String(chars, wordOffsets[i], wordLengths[i]);
+	}
+
+	public int getFrequency(int i) {
+		return frequencies[i];
+	}
+
+	public int getPosition(int i) {
+		return wordPositions[i];
+	}
+
+	public int getSequenceCount() {
+		return sequenceCount;
+	}
+
+	@NonNull public String getSequence(int i) {
+		return new String(chars, sequenceOffsets[i], sequenceLengths[i]);
+	}
+
+	public int getStart(int i) {
+		return starts[i];
 	}
 
-	@NonNull public ArrayList<WordPosition> getPositions() {
-		return positions;
+	public int getEnd(int i) {
+		return ends[i];
 	}
 }
@@ -13,7 +13,7 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -30,8 +30,17 @@ public class WordFile extends AssetFile {
 	private final Context context;
 	private final boolean hasSyllables;
 
-	private int lastCharCode;
 	private BufferedReader reader;
+	@NonNull private char[] buffer = new char[SettingsStore.DICTIONARY_IMPORT_BUFFER_SIZE];
+	private int bufferLength = 0;
+	private int bufferPosition = 0;
+	private boolean isEOF = false;
+
+	private int sequenceStart = 0;
+	private int sequenceEnd = 0;
+	@NonNull private int[] wordStarts = new int[16];
+	@NonNull private int[] wordEnds = new int[16];
+	private int wordCount = 0;
 
 	private String hash = null;
 	private String downloadUrl = null;
@@ -43,8 +52,6 @@ public class WordFile extends AssetFile {
 		super(assets, language != null ? language.getDictionaryFile() : "");
 		this.context = context;
 		hasSyllables = language != null && language.isSyllabary();
-
-		lastCharCode = 0;
 		reader = null;
 	}
 
@@ -223,92 +230,149 @@ public class WordFile extends AssetFile {
 	}
 
 
-	public String getNextSequence() throws IOException {
-		if (reader == null || !notEOF()) {
-			return "";
+	/**
+	 * Moves to the next sequence in the file. Returns false at the end of the file. The sequence and
+	 * the words are not copied anywhere. They are available as offsets in getBuffer(), until the next
+	 * call, to avoid allocating new objects for each of the hundreds of thousands of sequences.
+	 */
+	public boolean next() throws IOException {
+		if (reader == null) {
+			return false;
 		}
 
-		StringBuilder sequence = new StringBuilder();
-
-		// use the last char from getNextWords() if it's a digit
-		if (Character.isDigit(lastCharCode)) {
-			sequence.append((char) lastCharCode);
+		int recordEnd = findRecordEnd();
+		while (recordEnd < 0 && !isEOF) {
+			fillBuffer();
+			recordEnd = findRecordEnd();
 		}
 
-		while ((lastCharCode = reader.read()) != -1) {
-			if (Character.isDigit(lastCharCode)) {
-				sequence.append((char) lastCharCode);
-			} else {
-				break;
-			}
+		if (bufferPosition >= bufferLength) {
+			return false;
 		}
 
-		if (sequence.length() == 0) {
-			throw new IOException("Could not find next sequence. Unexpected end of file.");
+		parseRecord(recordEnd < 0 ? bufferLength : recordEnd);
+		return true;
+	}
+
+
+	/**
+	 * Returns the end of the sequence and its words at the current buffer position, or -1 if it
+	 * continues beyond the data currently in the buffer.
+	 */
+	private int findRecordEnd() {
+		int i = bufferPosition;
+		while (i < bufferLength && Character.isDigit(buffer[i])) {
+			i++;
+		}
+		while (i < bufferLength && !Character.isDigit(buffer[i])) {
+			i++;
 		}
 
-		return sequence.toString();
+		return i < bufferLength ? i : -1;
 	}
 
 
-	public ArrayList<String> getNextWords(String digitSequence) throws IOException {
-		ArrayList<String> words = new ArrayList<>();
-
-		if (reader == null || !notEOF()) {
-			return words;
+	/**
+	 * Moves the unread data to the beginning of the buffer and reads a new block after it. The buffer
+	 * only grows when a single sequence with its words does not fit in it.
+	 */
+	private void fillBuffer() throws IOException {
+		int unread = bufferLength - bufferPosition;
+		if (bufferPosition > 0) {
+			System.arraycopy(buffer, bufferPosition, buffer, 0, unread);
+		} else if (unread == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
 		}
 
-		boolean areWordsSeparated = hasSyllables; // if the language chars are syllables, there is no leading space to hint word separation
-		StringBuilder word = new StringBuilder();
+		bufferPosition = 0;
+		bufferLength = unread;
 
-		// If the word string starts with a space, it means there are words longer than the sequence.
-		// We must make sure to extract them correctly.
-		if (lastCharCode == ' ') {
-			areWordsSeparated = true;
-		}
-		// use the last char from getNextSequence() if it's a letter
-		else if (!Character.isDigit(lastCharCode)) {
-			word.append((char) lastCharCode);
+		int read = reader.read(buffer, bufferLength, buffer.length - bufferLength);
+		if (read < 0) {
+			isEOF = true;
+		} else {
+			bufferLength += read;
 		}
+	}
 
-		int sequenceLength = digitSequence.length();
 
-		// start extracting the words
-		int wordLength = word.length();
-		while ((lastCharCode = reader.read()) != -1) {
-			if (Character.isDigit(lastCharCode)) {
-				break;
-			}
+	private void parseRecord(int recordEnd) throws IOException {
+		sequenceStart = bufferPosition;
+		while (bufferPosition < recordEnd && Character.isDigit(buffer[bufferPosition])) {
+			bufferPosition++;
+		}
+		sequenceEnd = bufferPosition;
+
+		if (sequenceStart == sequenceEnd) {
+			throw new IOException("Could not find next sequence. Unexpected end of file.");
+		}
 
-			if (lastCharCode == ' ') {
+		// If the word string starts with a space, it means there are words longer than the sequence.
+		// If the language chars are syllables, the words are always separated, without a leading space.
+		boolean areWordsSeparated = hasSyllables;
+		int sequenceLength = sequenceEnd - sequenceStart;
+		int wordStart = bufferPosition;
+		wordCount = 0;
+
+		for (; bufferPosition < recordEnd; bufferPosition++) {
+			if (buffer[bufferPosition] == ' ') {
 				areWordsSeparated = true;
-			} else {
-				word.append((char) lastCharCode);
-				wordLength++;
+				if (bufferPosition > wordStart) {
+					addWord(wordStart, bufferPosition);
+				}
+				wordStart = bufferPosition + 1;
+			} else if (!areWordsSeparated && bufferPosition + 1 - wordStart == sequenceLength) {
+				addWord(wordStart, bufferPosition + 1);
+				wordStart = bufferPosition + 1;
 			}
+		}
 
-			if ((areWordsSeparated && lastCharCode == ' ' && wordLength > 0) || (!areWordsSeparated && wordLength == sequenceLength)) {
-				words.add(word.toString());
-				wordLength = 0;
-				word.setLength(wordLength);
+		if (recordEnd > wordStart) {
+			if (!areWordsSeparated) {
+				throw new IOException("Unexpected end of file. Word: '" + new String(buffer, wordStart, recordEnd - wordStart) + "' length (" + (recordEnd - wordStart) + ") differs from the length of sequence: " + new String(buffer, sequenceStart, sequenceLength));
 			}
-    }
+			addWord(wordStart, recordEnd);
+		}
 
-		if ((areWordsSeparated && wordLength > 0) || (!areWordsSeparated && wordLength == sequenceLength)) {
-			words.add(word.toString());
-		} else if (wordLength > 0) {
-			throw new IOException("Unexpected end of file. Word: '" + word + "' length (" + wordLength + ") differs from the length of sequence: " + digitSequence);
+		if (wordCount == 0) {
+			throw new IOException("Could not find any words for sequence: " + new String(buffer, sequenceStart, sequenceLength));
 		}
+	}
+
 
-		if (words.isEmpty()) {
-			throw new IOException("Could not find any words for sequence: " + digitSequence);
+	private void addWord(int start, int end) {
+		if (wordCount == wordStarts.length) {
+			wordStarts = Arrays.copyOf(wordStarts, wordCount * 2);
+			wordEnds = Arrays.copyOf(wordEnds, wordCount * 2);
 		}
 
-		return words;
+		wordStarts[wordCount] = start;
+		wordEnds[wordCount] = end;
+		wordCount++;
 	}
 
 
-	public boolean notEOF() {
-		return lastCharCode != -1;
+	@NonNull public char[] getBuffer() {
+		return buffer;
+	}
+
+	public int getSequenceStart() {
+		return sequenceStart;
+	}
+
+	public int getSequenceEnd() {
+		return sequenceEnd;
+	}
+
+	@NonNull public int[] getWordStarts() {
+		return wordStarts;
+	}
+
+	@NonNull public int[] getWordEnds() {
+		return wordEnds;
+	}
+
+	public int getWordCount() {
+		return wordCount;
 	}
 }
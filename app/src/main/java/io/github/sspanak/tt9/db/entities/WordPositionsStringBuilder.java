@@ -17,17 +17,21 @@ public class WordPositionsStringBuilder {
 		return this;
 	}
 
-	private void append(int start, int end) {
-		if (size > 0) {
+	/**
+	 * Appends a range as: "start:end", or just "start", when it contains a single position. "size"
+	 * is the total amount of positions in all ranges.
+	 */
+	void append(int start, int end) {
+		if (positions.length() > 0) {
 			positions.append(",");
 		}
-		positions.append(start);
-		size++;
 
-		for (int position = start + 1; position <= end; position++) {
-			positions.append(",").append(position);
-			size++;
+		positions.append(start);
+		if (end > start) {
+			positions.append(":").append(end);
 		}
+
+		size += Math.max(end - start, 0) + 1;
 	}
 
 	@NonNull
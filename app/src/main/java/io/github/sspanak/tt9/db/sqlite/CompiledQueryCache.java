@@ -9,7 +9,7 @@ import androidx.annotation.NonNull;
 import java.util.HashMap;
 
 class CompiledQueryCache {
-	private static CompiledQueryCache self;
+	private static final HashMap<SQLiteDatabase, CompiledQueryCache> instances = new HashMap<>();
 	private final SQLiteDatabase db;
 	private final HashMap<Integer, SQLiteStatement> statements = new HashMap<>();
 
@@ -41,12 +41,32 @@ class CompiledQueryCache {
 	}
 
 
-	static CompiledQueryCache getInstance(SQLiteDatabase db) {
-		if (self == null) {
-			self = new CompiledQueryCache(db);
+	/**
+	 * The statements are compiled for a specific connection, so there is one cache per database.
+	 */
+	static synchronized CompiledQueryCache getInstance(SQLiteDatabase db) {
+		CompiledQueryCache instance = instances.get(db);
+		if (instance == null) {
+			instance = new CompiledQueryCache(db);
+			instances.put(db, instance);
 		}
 
-		return self;
+		return instance;
+	}
+
+	/**
+	 * Must be called before closing any database other than the main one, to release its statements.
+	 */
+	static synchronized void release(SQLiteDatabase db) {
+		CompiledQueryCache instance = instances.remove(db);
+		if (instance == null) {
+			return;
+		}
+
+		for (SQLiteStatement statement : instance.statements.values()) {
+			statement.close();
+		}
+		instance.statements.clear();
 	}
 
 	static CompiledQueryCache execute(SQLiteDatabase db, String sql) {
@@ -1,23 +1,41 @@
 package io.github.sspanak.tt9.db.sqlite;
 
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 import androidx.annotation.NonNull;
 
+import io.github.sspanak.tt9.db.wordPairs.WordPair;
+
 public class DeleteOps {
 	public static void delete(@NonNull SQLiteDatabase db, int languageId) {
 		db.delete(Tables.getWords(languageId), null, null);
 		db.delete(Tables.getWordPositions(languageId), null, null);
+		UpdateOps.setWordCount(db, languageId, 0);
+		UpdateOps.setTableSize(db, languageId, 0);
+	}
+
+	public static void deleteWords(@NonNull SQLiteDatabase db, int languageId, int start, int end) {
+		db.delete(Tables.getWords(languageId), "position BETWEEN ? AND ?", new String[] { String.valueOf(start), String.valueOf(end) });
+	}
+
+	public static void deleteWordPosition(@NonNull SQLiteDatabase db, int languageId, @NonNull String sequence) {
+		db.delete(Tables.getWordPositions(languageId), "sequence = ?", new String[] { sequence });
 	}
 
 	public static void deleteCustomWord(@NonNull SQLiteDatabase db, int languageId, String word) {
-		db.delete(Tables.getWords(languageId), "word = ?", new String[] { word });
+		int deleted = db.delete(Tables.getWords(languageId), "word = ?", new String[] { word });
+		if (deleted > 0) {
+			UpdateOps.changeWordCount(db, languageId, -deleted);
+		}
 		db.delete(Tables.CUSTOM_WORDS, "word = ?", new String[] { word });
 	}
 
 	public static void purgeCustomWords(@NonNull SQLiteDatabase db, int languageId) {
-		String words = Tables.getWords(languageId);
+		purgeCustomWords(db, languageId, Tables.getWords(languageId));
+	}
 
+	static void purgeCustomWords(@NonNull SQLiteDatabase db, int languageId, @NonNull String words) {
 		String repeatingWords =
 			"SELECT " + Tables.CUSTOM_WORDS + ".ROWID FROM " + Tables.CUSTOM_WORDS +
 			" JOIN " + words + " ON " + words + ".word = " + Tables.CUSTOM_WORDS + ".word " +
@@ -26,7 +44,27 @@ public class DeleteOps {
 		db.delete(Tables.CUSTOM_WORDS, "ROWID IN (" + repeatingWords + ")", null);
 	}
 
+	/**
+	 * Same as purgeCustomWords(), but also removes the custom words from the words table, for when
+	 * the dictionary words are updated without clearing the entire table.
+	 */
+	public static void purgeCustomWordsAndPositions(@NonNull SQLiteDatabase db, int languageId) {
+		purgeCustomWords(db, languageId);
+		db.delete(
+			Tables.getWords(languageId),
+			"position < 0 AND -position NOT IN (SELECT id FROM " + Tables.CUSTOM_WORDS + " WHERE langId = " + languageId + ")",
+			null
+		);
+	}
+
 	public static void deleteWordPairs(@NonNull SQLiteDatabase db, int languageId) {
 		db.delete(Tables.getWordPairs(languageId), null, null);
 	}
+
+	public static void deleteWordPair(@NonNull SQLiteDatabase db, int languageId, @NonNull WordPair pair) {
+		SQLiteStatement query = CompiledQueryCache.get(db, "DELETE FROM " + Tables.getWordPairs(languageId) + " WHERE word1 = ? AND sequence2 = ?");
+		query.bindString(1, pair.getWord1());
+		query.bindString(2, pair.getSequence2());
+		query.execute();
+	}
 }
@@ -0,0 +1,141 @@
+package io.github.sspanak.tt9.db.sqlite;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+
+import io.github.sspanak.tt9.db.exceptions.DictionaryImportAbortedException;
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+
+/**
+ * SQLite allows only one writer per database file, so to import multiple dictionaries in parallel,
+ * each one is first written to a separate temporary file. Then, the files are read one by one and
+ * their rows are copied to the main database, which is much faster than parsing the words again.
+ * The files are not attached to the main database, because Android permanently disables
+ * write-ahead logging on connections with attached databases.
+ */
+public class ImportDatabase {
+	private static final String FILE_PREFIX = "import_";
+	private static final String BENCHMARK_FILE_PREFIX = "import_benchmark_";
+
+
+	@NonNull
+	private static File getFile(@NonNull Context context, @NonNull Language language, boolean isBenchmark) {
+		return context.getDatabasePath((isBenchmark ? BENCHMARK_FILE_PREFIX : FILE_PREFIX) + language.getId() + ".db");
+	}
+
+
+	@NonNull
+	public static SQLiteDatabase create(@NonNull Context context, @NonNull Language language) {
+		return create(context, language, false);
+	}
+
+
+	/**
+	 * Creates an empty temporary database for the given language. Durability does not matter for it,
+	 * so journaling and syncing are disabled. The ImportBenchmark uses a separate file, so that it
+	 * can never overwrite or delete the file of a real import.
+	 */
+	@NonNull
+	public static SQLiteDatabase create(@NonNull Context context, @NonNull Language language, boolean isBenchmark) {
+		delete(context, language, isBenchmark);
+
+		SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(getFile(context, language, isBenchmark), null);
+		// the pragma returns the new mode, and the statement runs only when the cursor is moved
+		try (Cursor cursor = db.rawQuery("PRAGMA journal_mode = OFF", null)) {
+			cursor.moveToFirst();
+		}
+		db.execSQL("PRAGMA synchronous = OFF");
+		for (String query : Tables.getCreateImportQueries(language.getId())) {
+			db.execSQL(query);
+		}
+
+		return db;
+	}
+
+
+	public static void close(@NonNull SQLiteDatabase db) {
+		CompiledQueryCache.release(db);
+		db.close();
+	}
+
+
+	public static void delete(@NonNull Context context, @NonNull Language language) {
+		delete(context, language, false);
+	}
+
+
+	public static void delete(@NonNull Context context, @NonNull Language language, boolean isBenchmark) {
+		SQLiteDatabase.deleteDatabase(getFile(context, language, isBenchmark));
+	}
+
+
+	/**
+	 * Opens the temporary database of the given language for copying it to the main one. It is a
+	 * separate read-only connection, so the main database keeps its single writer.
+	 */
+	@NonNull
+	public static SQLiteDatabase openSource(@NonNull Context context, @NonNull Language language) {
+		return SQLiteDatabase.openDatabase(getFile(context, language, false).getPath(), null, SQLiteDatabase.OPEN_READONLY);
+	}
+
+
+	/**
+	 * Copies the words and the positions from the temporary database to the shadow tables of the
+	 * main one (see: ShadowTables), through the main connection. Each batch is written in its own
+	 * transaction, so the other writes wait for one batch at most, instead of for the entire copy.
+	 */
+	public static void copy(@NonNull SQLiteOpener sqlite, @NonNull SQLiteDatabase source, @NonNull Language language) throws DictionaryImportAbortedException {
+		final int langId = language.getId();
+		final SQLiteDatabase target = sqlite.getDb();
+		final InsertOps insertOps = new InsertOps(target, language, true);
+
+		try (Cursor cursor = source.rawQuery("SELECT frequency, position, word FROM " + Tables.getWords(langId), null)) {
+			while (!cursor.isAfterLast()) {
+				sqlite.beginTransaction();
+				for (int i = 0; i < SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE && cursor.moveToNext(); i++) {
+					insertOps.insertWord(cursor.getString(2), cursor.getInt(0), cursor.getInt(1));
+				}
+				sqlite.finishTransaction();
+				throwIfInterrupted();
+			}
+		}
+
+		try (Cursor cursor = source.rawQuery("SELECT sequence, `start`, `end` FROM " + Tables.getWordPositions(langId), null)) {
+			while (!cursor.isAfterLast()) {
+				sqlite.beginTransaction();
+				for (int i = 0; i < SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE && cursor.moveToNext(); i++) {
+					insertOps.insertWordPosition(cursor.getString(0), cursor.getInt(1), cursor.getInt(2));
+				}
+				sqlite.finishTransaction();
+				throwIfInterrupted();
+			}
+		}
+	}
+
+
+	/**
+	 * Copies the language metadata from the temporary database. Call it in the same transaction as
+	 * ShadowTables.swap(), so that the new hash is saved only together with the new words.
+	 */
+	public static void copyLanguageMeta(@NonNull SQLiteDatabase source, @NonNull SQLiteDatabase target, @NonNull Language language) {
+		String sql = "SELECT fileHash, maxWordsPerSequence FROM " + Tables.LANGUAGES_META + " WHERE langId = " + language.getId();
+		try (Cursor cursor = source.rawQuery(sql, null)) {
+			if (cursor.moveToFirst()) {
+				InsertOps.replaceLanguageMeta(target, language.getId(), cursor.getString(0), cursor.getInt(1));
+			}
+		}
+	}
+
+
+	private static void throwIfInterrupted() throws DictionaryImportAbortedException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new DictionaryImportAbortedException();
+		}
+	}
+}
@@ -8,8 +8,6 @@ import androidx.annotation.NonNull;
 
 import java.util.Collection;
 
-import io.github.sspanak.tt9.db.entities.Word;
-import io.github.sspanak.tt9.db.entities.WordPosition;
 import io.github.sspanak.tt9.db.wordPairs.WordPair;
 import io.github.sspanak.tt9.languages.Language;
 
@@ -20,24 +18,35 @@ public class InsertOps {
 
 
 	public InsertOps(SQLiteDatabase db, @NonNull Language language) {
+		this(db, language, false);
+	}
+
+
+	/**
+	 * @param toShadowTables insert into the tables of an ongoing import, instead of the current ones
+	 */
+	public InsertOps(SQLiteDatabase db, @NonNull Language language, boolean toShadowTables) {
+		final String words = toShadowTables ? Tables.getShadowWords(language.getId()) : Tables.getWords(language.getId());
+		final String positions = toShadowTables ? Tables.getShadowWordPositions(language.getId()) : Tables.getWordPositions(language.getId());
+
 		// super cache to avoid String concatenation in the dictionary loading loop
-		insertWordsQuery = CompiledQueryCache.get(db, "INSERT INTO " + Tables.getWords(language.getId()) + " (frequency, position, word) VALUES (?, ?, ?)");
-		insertPositionsQuery = CompiledQueryCache.get(db, "INSERT INTO " + Tables.getWordPositions(language.getId()) + " (sequence, `start`, `end`) VALUES (?, ?, ?)");
+		insertWordsQuery = CompiledQueryCache.get(db, "INSERT INTO " + words + " (frequency, position, word) VALUES (?, ?, ?)");
+		insertPositionsQuery = CompiledQueryCache.get(db, "INSERT INTO " + positions + " (sequence, `start`, `end`) VALUES (?, ?, ?)");
 	}
 
 
-	public void insertWord(Word word) {
-		insertWordsQuery.bindLong(1, word.frequency);
-		insertWordsQuery.bindLong(2, word.position);
-		insertWordsQuery.bindString(3, word.word);
+	public void insertWord(@NonNull String word, int frequency, int position) {
+		insertWordsQuery.bindLong(1, frequency);
+		insertWordsQuery.bindLong(2, position);
+		insertWordsQuery.bindString(3, word);
 		insertWordsQuery.execute();
 	}
 
 
-	public void insertWordPosition(WordPosition position) {
-		insertPositionsQuery.bindString(1, position.sequence);
-		insertPositionsQuery.bindLong(2, position.start);
-		insertPositionsQuery.bindLong(3, position.end);
+	public void insertWordPosition(@NonNull String sequence, int start, int end) {
+		insertPositionsQuery.bindString(1, sequence);
+		insertPositionsQuery.bindLong(2, start);
+		insertPositionsQuery.bindLong(3, end);
 		insertPositionsQuery.execute();
 	}
 
@@ -69,16 +78,25 @@ public class InsertOps {
 		values.put("position", (int)-insertId);
 		values.put("word", word);
 		insertId = db.insert(Tables.getWords(language.getId()), null, values);
+		if (insertId == -1) {
+			return false;
+		}
 
-		return insertId != -1;
+		UpdateOps.changeWordCount(db, language.getId(), 1);
+		return true;
 	}
 
 
 	public static void restoreCustomWords(@NonNull SQLiteDatabase db, @NonNull Language language) {
+		restoreCustomWords(db, language.getId(), Tables.getWords(language.getId()));
+	}
+
+
+	static void restoreCustomWords(@NonNull SQLiteDatabase db, int langId, @NonNull String words) {
 		CompiledQueryCache.execute(
 			db,
-			"INSERT INTO " + Tables.getWords(language.getId()) + " (position, word) " +
-				"SELECT -id, word FROM " + Tables.CUSTOM_WORDS + " WHERE langId = " + language.getId()
+			"INSERT INTO " + words + " (position, word) " +
+				"SELECT -id, word FROM " + Tables.CUSTOM_WORDS + " WHERE langId = " + langId
 		);
 	}
 
@@ -87,16 +105,28 @@ public class InsertOps {
 			return;
 		}
 
-		StringBuilder sql = new StringBuilder(
-			"INSERT INTO " + Tables.getWordPairs(langId) + " (word1, word2, sequence2) VALUES"
-		);
+		// SQLite before 3.8.8 (Android 5) allows up to 500 rows per VALUES clause
+		final int MAX_ROWS = 500;
+		final String INSERT = "INSERT INTO " + Tables.getWordPairs(langId) + " (word1, word2, sequence2, count) VALUES";
+
+		StringBuilder sql = new StringBuilder(INSERT);
+		int rows = 0;
 
 		for (WordPair pair : pairs) {
 			sql.append(pair.toSqlRow()).append(",");
-		}
 
-		sql.setLength(sql.length() - 1);
+			if (++rows == MAX_ROWS) {
+				sql.setLength(sql.length() - 1);
+				db.execSQL(sql.toString());
+				sql.setLength(0);
+				sql.append(INSERT);
+				rows = 0;
+			}
+		}
 
-		db.execSQL(sql.toString());
+		if (rows > 0) {
+			sql.setLength(sql.length() - 1);
+			db.execSQL(sql.toString());
+		}
 	}
 }
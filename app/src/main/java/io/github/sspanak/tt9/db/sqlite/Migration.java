@@ -21,6 +21,18 @@ class Migration {
 				" SET maxWordsPerSequence = " + SettingsStore.SUGGESTIONS_POSITIONS_LIMIT +
 				", fileHash = '0'",
 			832
+		),
+		new Migration(
+			"ALTER TABLE " + Tables.LANGUAGES_META + " ADD COLUMN wordCount INTEGER NOT NULL DEFAULT -1"
+		),
+		new Migration(
+			"ALTER TABLE " + Tables.LANGUAGES_META + " ADD COLUMN importTime INTEGER NOT NULL DEFAULT 0"
+		),
+		new Migration(
+			"ALTER TABLE " + Tables.LANGUAGES_META + " ADD COLUMN isDeltaUpdated INTEGER NOT NULL DEFAULT 0"
+		),
+		new Migration(
+			"ALTER TABLE " + Tables.LANGUAGES_META + " ADD COLUMN tableSize INTEGER NOT NULL DEFAULT -1"
 		)
 	};
 
@@ -0,0 +1,148 @@
+package io.github.sspanak.tt9.db.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import io.github.sspanak.tt9.util.Logger;
+
+/**
+ * Records the SQL statements executed by ReadOps while searching for words, so that the slow
+ * searches can be inspected later, together with the query plan of each statement. This way, we
+ * can see which sequences make SQLite scan a table or build a temporary B-tree for sorting.
+ *
+ * The recording is per thread and works only at the Debug log level. Getting the query plans takes
+ * extra queries, so it must not be done while the user is waiting for the suggestions. Usage:
+ *   QueryProfiler.start();
+ *   ... ReadOps calls ...
+ *   QueryProfiler.Profile profile = QueryProfiler.stop(isSlow);
+ *   ... later, in the background ...
+ *   String report = QueryProfiler.explain(db, profile);
+ */
+public class QueryProfiler {
+	private static final String LOG_TAG = QueryProfiler.class.getSimpleName();
+	private static final ThreadLocal<ArrayList<Statement>> statements = new ThreadLocal<>();
+
+
+	/**
+	 * The statements of a stopped recording, waiting for explain().
+	 */
+	public static class Profile {
+		@NonNull private final ArrayList<Statement> statements;
+
+		private Profile(@NonNull ArrayList<Statement> statements) {
+			this.statements = statements;
+		}
+	}
+
+
+	private static class Statement {
+		@NonNull private final String source;
+		@Nullable private final String sql;
+		@Nullable private final String[] args;
+		private final int rows;
+		private final long examinedRows;
+
+		private Statement(@NonNull String source, @Nullable String sql, @Nullable String[] args, int rows, long examinedRows) {
+			this.source = source;
+			this.sql = sql;
+			this.args = args;
+			this.rows = rows;
+			this.examinedRows = examinedRows;
+		}
+	}
+
+
+	public static void start() {
+		statements.set(Logger.isDebugLevel() ? new ArrayList<>() : null);
+	}
+
+
+	/**
+	 * Adds a statement to the current recording. "sql" is null when the data came from memory, for
+	 * example, from the SequenceIndex. "rows" is the result size and "examinedRows" is the number of
+	 * rows SQLite had to read to produce it. Use -1 for the unknown values.
+	 */
+	static void add(@NonNull String source, @Nullable String sql, @Nullable String[] args, int rows, long examinedRows) {
+		ArrayList<Statement> list = statements.get();
+		if (list != null) {
+			list.add(new Statement(source, sql, args, rows, examinedRows));
+		}
+	}
+
+
+	/**
+	 * Stops the recording. When "keep" is true, returns the recorded statements for explain().
+	 * Otherwise, or when nothing was recorded, returns null. No queries are made here.
+	 */
+	@Nullable
+	public static Profile stop(boolean keep) {
+		ArrayList<Statement> list = statements.get();
+		statements.set(null);
+
+		return keep && list != null && !list.isEmpty() ? new Profile(list) : null;
+	}
+
+
+	/**
+	 * Returns a report with the query plan of each statement in the given profile.
+	 */
+	@NonNull
+	public static String explain(@NonNull SQLiteDatabase db, @NonNull Profile profile) {
+		StringBuilder report = new StringBuilder();
+		for (Statement statement : profile.statements) {
+			report.append(statement.source);
+			if (statement.rows >= 0) {
+				report.append(": ").append(statement.rows).append(" rows");
+			}
+			if (statement.examinedRows >= 0) {
+				report.append(", ").append(statement.examinedRows).append(" examined");
+			}
+			report.append("\n");
+
+			if (statement.sql == null) {
+				continue;
+			}
+
+			report.append(statement.sql).append("\n");
+			if (statement.args != null && statement.args.length > 0) {
+				report.append("Arguments: ").append(Arrays.toString(statement.args)).append("\n");
+			}
+			appendQueryPlan(report, db, statement);
+		}
+
+		return report.toString().trim();
+	}
+
+
+	/**
+	 * Appends the "EXPLAIN QUERY PLAN" output as a tree, the way the SQLite command line tool
+	 * displays it.
+	 */
+	private static void appendQueryPlan(@NonNull StringBuilder report, @NonNull SQLiteDatabase db, @NonNull Statement statement) {
+		HashMap<Integer, Integer> depths = new HashMap<>();
+
+		try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + statement.sql, statement.args)) {
+			while (cursor.moveToNext()) {
+				Integer parentDepth = depths.get(cursor.getInt(1));
+				int depth = parentDepth != null ? parentDepth + 1 : 0;
+				depths.put(cursor.getInt(0), depth);
+
+				report.append("  ");
+				for (int i = 0; i < depth; i++) {
+					report.append("  ");
+				}
+				report.append(cursor.getString(3)).append("\n");
+			}
+		} catch (Exception e) {
+			Logger.w(LOG_TAG, "Could not get the query plan of: " + statement.sql + ". " + e.getMessage());
+			report.append("  No query plan. ").append(e.getMessage()).append("\n");
+		}
+	}
+}
@@ -11,13 +11,19 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.github.sspanak.tt9.db.entities.NormalizationList;
+import io.github.sspanak.tt9.db.entities.SequenceIndex;
+import io.github.sspanak.tt9.db.entities.Word;
 import io.github.sspanak.tt9.db.entities.WordList;
+import io.github.sspanak.tt9.db.entities.WordPosition;
 import io.github.sspanak.tt9.db.entities.WordPositionsStringBuilder;
 import io.github.sspanak.tt9.db.wordPairs.WordPair;
-import io.github.sspanak.tt9.db.words.SlowQueryStats;
+import io.github.sspanak.tt9.db.words.HotPositionsCache;
+import io.github.sspanak.tt9.db.words.SequenceIndexCache;
 import io.github.sspanak.tt9.db.words.WordStore;
 import io.github.sspanak.tt9.languages.EmojiLanguage;
 import io.github.sspanak.tt9.languages.Language;
@@ -26,7 +32,7 @@ import io.github.sspanak.tt9.util.Logger;
 
 public class ReadOps {
 	private final String LOG_TAG = "ReadOperations";
-	private final HashMap<Language, Integer> maxWordsPerSequence = new HashMap<>();
+	private final ConcurrentHashMap<Language, Integer> maxWordsPerSequence = new ConcurrentHashMap<>();
 
 
 	/**
@@ -49,14 +55,56 @@ public class ReadOps {
 
 
 	/**
-	 * Checks if language exists (has words) in the database.
+	 * Returns the number of words of the given language, as stored in the language metadata,
+	 * or -1 when it is unknown.
 	 */
-	public boolean exists(@NonNull SQLiteDatabase db, int langId) {
+	public long getWordCount(@NonNull SQLiteDatabase db, int langId) {
 		return CompiledQueryCache.simpleQueryForLong(
 			db,
-			"SELECT COUNT(*) FROM " + Tables.getWords(langId),
-			0
-		) > 0;
+			"SELECT wordCount FROM " + Tables.LANGUAGES_META + " WHERE langId = " + langId,
+			-1
+		);
+	}
+
+
+	/**
+	 * Returns the word count and the estimated table size in bytes of each language, as stored in
+	 * the language metadata. The unknown values are -1.
+	 */
+	@NonNull
+	public HashMap<Integer, long[]> getTableSizes(@NonNull SQLiteDatabase db) {
+		HashMap<Integer, long[]> sizes = new HashMap<>();
+		try (Cursor cursor = db.rawQuery("SELECT langId, wordCount, tableSize FROM " + Tables.LANGUAGES_META, null)) {
+			while (cursor.moveToNext()) {
+				sizes.put(cursor.getInt(0), new long[] { cursor.getLong(1), cursor.getLong(2) });
+			}
+		}
+
+		return sizes;
+	}
+
+
+	/**
+	 * Counts the words of the given language and estimates the size of its tables by scanning them
+	 * entirely. Returns: { words, bytes }. See UpdateOps.updateWordCount() for the estimation.
+	 */
+	@NonNull
+	public long[] measureTables(@NonNull SQLiteDatabase db, int langId) {
+		return measureTables(db, Tables.getWords(langId), Tables.getWordPositions(langId));
+	}
+
+
+	@NonNull
+	static long[] measureTables(@NonNull SQLiteDatabase db, @NonNull String words, @NonNull String positions) {
+		String sql =
+			"SELECT " +
+				"(SELECT COUNT(*) FROM " + words + "), " +
+				"(SELECT IFNULL(SUM(LENGTH(CAST(word AS BLOB))), 0) + COUNT(*) * 8 FROM " + words + ") + " +
+				"(SELECT IFNULL(SUM(LENGTH(sequence)), 0) + COUNT(*) * 8 FROM " + positions + ")";
+
+		try (Cursor cursor = db.rawQuery(sql, null)) {
+			return cursor.moveToFirst() ? new long[] { cursor.getLong(0), cursor.getLong(1) } : new long[] { 0, 0 };
+		}
 	}
 
 
@@ -74,8 +122,53 @@ public class ReadOps {
 	}
 
 
+	/**
+	 * Same as getLanguageFileHash(), but returns an empty string when the dictionary was updated
+	 * using a delta file. Then, the positions no longer match the precompiled index file.
+	 */
+	@NonNull
+	public String getIndexFileHash(@NonNull SQLiteDatabase db, int langId) {
+		SQLiteStatement query = CompiledQueryCache.get(db, "SELECT fileHash FROM " + Tables.LANGUAGES_META + " WHERE langId = ? AND isDeltaUpdated = 0");
+		query.bindLong(1, langId);
+		try {
+			return query.simpleQueryForString();
+		} catch (SQLiteDoneException e) {
+			return "";
+		}
+	}
+
+
+	/**
+	 * Returns the dictionary position range of a single sequence, or null if it does not exist.
+	 */
+	@Nullable
+	public WordPosition getWordPosition(@NonNull SQLiteDatabase db, int langId, @NonNull String sequence) {
+		String sql = "SELECT `start`, `end` FROM " + Tables.getWordPositions(langId) + " WHERE sequence = ?";
+		try (Cursor cursor = db.rawQuery(sql, new String[] { sequence })) {
+			return cursor.moveToFirst() ? WordPosition.create(sequence, cursor.getInt(0), cursor.getInt(1)) : null;
+		}
+	}
+
+
+	/**
+	 * Returns the dictionary words in the given position range, ordered by position.
+	 */
+	@NonNull
+	public ArrayList<Word> getWords(@NonNull SQLiteDatabase db, int langId, int start, int end) {
+		ArrayList<Word> words = new ArrayList<>();
+		String sql = "SELECT word, frequency, position FROM " + Tables.getWords(langId) + " WHERE position BETWEEN ? AND ? ORDER BY position";
+		try (Cursor cursor = db.rawQuery(sql, new String[] { String.valueOf(start), String.valueOf(end) })) {
+			while (cursor.moveToNext()) {
+				words.add(Word.create(cursor.getString(0), cursor.getInt(1), cursor.getInt(2)));
+			}
+		}
+
+		return words;
+	}
+
+
 	public long countCustomWords(@NonNull SQLiteDatabase db) {
-		return CompiledQueryCache.simpleQueryForLong(db, "SELECT COUNT(*) FROM " + Tables.CUSTOM_WORDS, 0);
+		return CompiledQueryCache.simpleQueryForLong(db, "SELECT wordCount FROM " + Tables.CUSTOM_WORDS_META, 0);
 	}
 
 
@@ -134,13 +227,15 @@ public class ReadOps {
 		// EXACT_MATCHES concerns only the positions query
 		filter = filter.equals(WordStore.FILTER_EXACT_MATCHES_ONLY) ? "" : filter;
 
-		String wordsQuery = getWordsQuery(language, positions, filter, maximumWords, fullOutput);
-		if (wordsQuery.isEmpty() || (cancel != null && cancel.isCanceled())) {
+		WordPositionRanges ranges = WordPositionRanges.parse(positions);
+		String wordsQuery = getWordsQuery(language, ranges, filter, maximumWords, fullOutput);
+		if (ranges.isEmpty() || (cancel != null && cancel.isCanceled())) {
 			return new WordList();
 		}
 
 		WordList words = new WordList();
-		try (Cursor cursor = db.rawQuery(wordsQuery, null, cancel)) {
+		String[] wordsQueryArguments = getWordsQueryArguments(ranges, filter);
+		try (Cursor cursor = db.rawQuery(wordsQuery, wordsQueryArguments, cancel)) {
 			while (cursor.moveToNext()) {
 					words.add(
 						cursor.getString(0),
@@ -153,24 +248,43 @@ public class ReadOps {
 			return words;
 		}
 
+		QueryProfiler.add("Words", wordsQuery, wordsQueryArguments, words.size(), ranges.countPositions());
 		return words;
 	}
 
 
 	public String getSimilarWordPositions(@NonNull SQLiteDatabase db, @NonNull CancellationSignal cancel, @NonNull Language language, @NonNull String sequence, String wordFilter, int minPositions) {
-		int generations;
+		return getWordPositions(db, cancel, language, sequence, getGenerations(sequence, wordFilter), minPositions, wordFilter);
+	}
+
 
+	/**
+	 * Returns how many digits longer the similar words can be. 10 means the entire range between
+	 * "sequence1" and "sequence9", up to the positions limit.
+	 */
+	public static int getGenerations(@NonNull String sequence, @NonNull String wordFilter) {
 		if (wordFilter.equals(WordStore.FILTER_EXACT_MATCHES_ONLY)) {
-			generations = 0;
-		} else {
-			generations = switch (sequence.length()) {
-				case 2 -> wordFilter.isEmpty() ? 1 : 10;
-				case 3, 4 -> wordFilter.isEmpty() ? 2 : 10;
-				default -> 10;
-			};
+			return 0;
 		}
 
-		return getWordPositions(db, cancel, language, sequence, generations, minPositions, wordFilter);
+		return switch (sequence.length()) {
+			case 2 -> wordFilter.isEmpty() ? 1 : 10;
+			case 3, 4 -> wordFilter.isEmpty() ? 2 : 10;
+			default -> 10;
+		};
+	}
+
+
+	/**
+	 * Returns true, when the positions returned by getSimilarWordPositions() were not cut by the
+	 * positions limit and contain no custom words. Then, all words in the searched range are known.
+	 */
+	public boolean arePositionsComplete(@NonNull Language language, @NonNull String positions) {
+		Integer maxWords = maxWordsPerSequence.get(language);
+		int limit = maxWords != null ? maxWords : SettingsStore.SUGGESTIONS_POSITIONS_LIMIT;
+
+		WordPositionRanges ranges = WordPositionRanges.parse(positions);
+		return !ranges.hasCustomPositions() && ranges.countPositions() < limit;
 	}
 
 
@@ -180,28 +294,62 @@ public class ReadOps {
 			return sequence;
 		}
 
-		WordPositionsStringBuilder positions = new WordPositionsStringBuilder();
+		final int hotPositionsRevision = HotPositionsCache.getRevision();
+		String factoryWordPositions = null;
+		if (HotPositionsCache.isCacheable(sequence)) {
+			loadHotPositionsIfMissing(db, language, hotPositionsRevision);
+			factoryWordPositions = HotPositionsCache.get(language, sequence, generations, minPositions);
+			if (factoryWordPositions != null) {
+				QueryProfiler.add("Positions from HotPositionsCache", null, null, -1, -1);
+			}
+		}
+
+		if (factoryWordPositions == null) {
+			SequenceIndex index = SequenceIndexCache.get(language);
+			factoryWordPositions = index != null ? getIndexedWordPositions(index, language, sequence, generations, minPositions) : getFactoryWordPositions(db, cancel, language, sequence, generations, minPositions);
+			if (factoryWordPositions == null) {
+				return sequence;
+			}
+			HotPositionsCache.put(hotPositionsRevision, language, sequence, generations, minPositions, factoryWordPositions);
+		}
+
+		String customWordPositions = getCustomWordPositions(db, cancel, language, sequence, generations);
 
-		String cachedFactoryPositions = SlowQueryStats.getCachedIfSlow(SlowQueryStats.generateKey(language, sequence, wordFilter, minPositions));
-		if (cachedFactoryPositions != null) {
-			String customWordPositions = getCustomWordPositions(db, cancel, language, sequence, generations);
-			return customWordPositions.isEmpty() ? cachedFactoryPositions : customWordPositions + "," + cachedFactoryPositions;
+		if (customWordPositions.isEmpty()) {
+			return factoryWordPositions;
+		} else if (factoryWordPositions.isEmpty()) {
+			return customWordPositions;
+		} else {
+			return customWordPositions + "," + factoryWordPositions;
 		}
+	}
+
+
+	/**
+	 * Gets the dictionary word positions from the database. Returns null if the query was cancelled.
+	 */
+	@Nullable
+	private String getFactoryWordPositions(@NonNull SQLiteDatabase db, @Nullable CancellationSignal cancel, @NonNull Language language, @NonNull String sequence, int generations, int minPositions) {
+		WordPositionsStringBuilder positions = new WordPositionsStringBuilder();
 
-		try (Cursor cursor = db.rawQuery(getPositionsQuery(language, sequence, generations), null, cancel)) {
+		String sql = getFactoryWordPositionsQuery(language, sequence, generations);
+		try (Cursor cursor = db.rawQuery(sql, null, cancel)) {
 			positions.appendFromDbRanges(cursor);
+			QueryProfiler.add("Positions", sql, null, cursor.getCount(), -1);
 		} catch (OperationCanceledException ignored) {
 			Logger.d(LOG_TAG, "Word positions query cancelled!");
-			return sequence;
+			return null;
 		}
 
 		if (positions.size < minPositions && generations < Integer.MAX_VALUE) {
 			Logger.d(LOG_TAG, "Not enough positions: " + positions.size + " < " + minPositions + ". Searching for more.");
-			try (Cursor cursor = db.rawQuery(getFactoryWordPositionsQuery(language, sequence, Integer.MAX_VALUE), null, cancel)) {
+			sql = getFactoryWordPositionsQuery(language, sequence, Integer.MAX_VALUE);
+			try (Cursor cursor = db.rawQuery(sql, null, cancel)) {
 				positions.appendFromDbRanges(cursor);
+				QueryProfiler.add("More positions", sql, null, cursor.getCount(), -1);
 			} catch (OperationCanceledException ignored) {
 				Logger.d(LOG_TAG, "Word positions query cancelled!");
-				return sequence;
+				return null;
 			}
 		}
 
@@ -209,9 +357,35 @@ public class ReadOps {
 	}
 
 
+	/**
+	 * Same as getFactoryWordPositions(), but the positions come from the in-memory index, instead
+	 * of the database.
+	 */
+	@NonNull
+	private String getIndexedWordPositions(@NonNull SequenceIndex index, @NonNull Language language, @NonNull String sequence, int generations, int minPositions) {
+		WordPositionsStringBuilder positions = new WordPositionsStringBuilder();
+
+		Integer maxWords = maxWordsPerSequence.get(language);
+		int limit = maxWords != null ? maxWords : SettingsStore.SUGGESTIONS_POSITIONS_LIMIT;
+
+		index.appendPositions(positions, sequence, generations, limit);
+
+		if (positions.size < minPositions && generations < Integer.MAX_VALUE) {
+			Logger.d(LOG_TAG, "Not enough indexed positions: " + positions.size + " < " + minPositions + ". Searching for more.");
+			index.appendPositions(positions, sequence, Integer.MAX_VALUE, limit);
+		}
+
+		QueryProfiler.add("Positions from SequenceIndex", null, null, positions.size, -1);
+		return positions.toString();
+	}
+
+
 	@NonNull private String getCustomWordPositions(@NonNull SQLiteDatabase db, CancellationSignal cancel, Language language, String sequence, int generations) {
-		try (Cursor cursor = db.rawQuery(getCustomWordPositionsQuery(language, sequence, generations), null, cancel)) {
-			return new WordPositionsStringBuilder().appendFromDbRanges(cursor).toString();
+		String sql = getCustomWordPositionsQuery(language, sequence, generations);
+		try (Cursor cursor = db.rawQuery(sql, null, cancel)) {
+			String positions = new WordPositionsStringBuilder().appendFromDbRanges(cursor).toString();
+			QueryProfiler.add("Custom word positions", sql, null, cursor.getCount(), -1);
+			return positions;
 		} catch (OperationCanceledException e) {
 			Logger.d(LOG_TAG, "Custom word positions query cancelled.");
 			return "";
@@ -219,15 +393,6 @@ public class ReadOps {
 	}
 
 
-	private String getPositionsQuery(@NonNull Language language, @NonNull String sequence, int generations) {
-		return
-			"SELECT `start`, `end` FROM ( " +
-				getFactoryWordPositionsQuery(language, sequence, generations) +
-				") UNION " +
-				getCustomWordPositionsQuery(language, sequence, generations);
-	}
-
-
 	/**
 	 * Generates a query to search for positions in the dictionary words table. It supports sequences
 	 * that start with a "0" (searches them as strings).
@@ -286,7 +451,11 @@ public class ReadOps {
 	}
 
 
-	@NonNull private String getWordsQuery(@NonNull Language language, @NonNull String positions, @NonNull String filter, int maxWords, boolean fullOutput) {
+	/**
+	 * Generates a words query with parameters for the position ranges and the filter, so that
+	 * the query text stays the same for most key presses and SQLite can reuse it.
+	 */
+	@NonNull private String getWordsQuery(@NonNull Language language, @NonNull WordPositionRanges ranges, @NonNull String filter, int maxWords, boolean fullOutput) {
 		StringBuilder sql = new StringBuilder();
 		sql
 			.append("SELECT word");
@@ -295,10 +464,10 @@ public class ReadOps {
 		}
 
 		sql.append(" FROM ").append(Tables.getWords(language.getId()))
-			.append(" WHERE position IN(").append(positions).append(")");
+			.append(" WHERE ").append(ranges.toSql("position"));
 
 		if (!filter.isEmpty()) {
-			sql.append(" AND word LIKE '").append(filter.replaceAll("'", "''")).append("%'");
+			sql.append(" AND word LIKE ?");
 		}
 
 		sql
@@ -311,6 +480,59 @@ public class ReadOps {
 	}
 
 
+	@NonNull private String[] getWordsQueryArguments(@NonNull WordPositionRanges ranges, @NonNull String filter) {
+		String[] args = ranges.getArguments();
+		if (filter.isEmpty()) {
+			return args;
+		}
+
+		args = Arrays.copyOf(args, args.length + 1);
+		args[args.length - 1] = filter + "%";
+		return args;
+	}
+
+
+	/**
+	 * Returns the ID of a language without a word lookup index, or 0, when all languages have one.
+	 */
+	/**
+	 * Returns the ID of a language imported before the word counts and the table sizes were stored,
+	 * or 0, when all are known.
+	 */
+	public int getLanguageWithoutWordCount(@NonNull SQLiteDatabase db) {
+		return (int) CompiledQueryCache.simpleQueryForLong(
+			db,
+			"SELECT langId FROM " + Tables.LANGUAGES_META + " WHERE wordCount < 0 OR tableSize < 0 LIMIT 1",
+			0
+		);
+	}
+
+
+	/**
+	 * Checks if the language has any words without counting them, for when getWordCount() is unknown.
+	 */
+	public boolean hasWords(@NonNull SQLiteDatabase db, int langId) {
+		return CompiledQueryCache.simpleQueryForLong(db, "SELECT EXISTS (SELECT 1 FROM " + Tables.getWords(langId) + ")", 0) > 0;
+	}
+
+
+	public int getLanguageWithoutLookupIndex(@NonNull SQLiteDatabase db) {
+		return (int) CompiledQueryCache.simpleQueryForLong(db, Tables.getMissingLookupIndexQuery(), 0);
+	}
+
+
+	/**
+	 * Loads the entire word positions table of the given language in an in-memory index.
+	 */
+	@NonNull
+	public SequenceIndex getSequenceIndex(@NonNull SQLiteDatabase db, @NonNull Language language) {
+		String sql = "SELECT sequence, `start`, `end` FROM " + Tables.getWordPositions(language.getId()) + " ORDER BY sequence";
+		try (Cursor cursor = db.rawQuery(sql, null)) {
+			return SequenceIndex.fromDbRanges(cursor);
+		}
+	}
+
+
 	public NormalizationList getNextInNormalizationQueue(@NonNull SQLiteDatabase db) {
 		String res = CompiledQueryCache.simpleQueryForString(
 			db,
@@ -329,11 +551,12 @@ public class ReadOps {
 			return pairs;
 		}
 
-		String[] select = new String[]{"word1", "word2", "sequence2"};
+		String[] select = new String[]{"word1", "word2", "sequence2", "count"};
 
-		try (Cursor cursor = db.query(Tables.getWordPairs(language.getId()), select, null, null, null, null, null, String.valueOf(limit))) {
+		// from the most to the least frequent, so that the rare ones are left out, when over the limit
+		try (Cursor cursor = db.query(Tables.getWordPairs(language.getId()), select, null, null, null, null, "count DESC, rowid", String.valueOf(limit))) {
 			while (cursor.moveToNext()) {
-				pairs.add(new WordPair(language, cursor.getString(0), cursor.getString(1), cursor.getString(2)));
+				pairs.add(new WordPair(language, cursor.getString(0), cursor.getString(1), cursor.getString(2), cursor.getInt(3)));
 			}
 		}
 
@@ -349,10 +572,30 @@ public class ReadOps {
 			return;
 		}
 
+		final int hotPositionsRevision = HotPositionsCache.getRevision();
+		loadHotPositionsIfMissing(db, language, hotPositionsRevision);
+		int savedMaxWords = HotPositionsCache.getMaxWordsPerSequence(language);
+		if (savedMaxWords > 0) {
+			maxWordsPerSequence.put(language, savedMaxWords);
+			return;
+		}
+
 		String sql = "SELECT maxWordsPerSequence FROM " + Tables.LANGUAGES_META + " WHERE langId = " + language.getId();
 		int maxWords = (int) CompiledQueryCache.simpleQueryForLong(db, sql, SettingsStore.SUGGESTIONS_POSITIONS_LIMIT);
 		maxWords = maxWords > 0 ? maxWords : SettingsStore.SUGGESTIONS_POSITIONS_LIMIT;
 
 		maxWordsPerSequence.put(language, maxWords);
+		HotPositionsCache.setMaxWordsPerSequence(hotPositionsRevision, language, maxWords);
+	}
+
+
+	/**
+	 * Loads the positions saved before the last restart, so that the first queries do not have to
+	 * wait for the database or for the SequenceIndex.
+	 */
+	private void loadHotPositionsIfMissing(@NonNull SQLiteDatabase db, @NonNull Language language, int hotPositionsRevision) {
+		if (!HotPositionsCache.isLoaded(language)) {
+			HotPositionsCache.load(hotPositionsRevision, language, getLanguageFileHash(db, language.getId()));
+		}
 	}
 }
@@ -0,0 +1,69 @@
+package io.github.sspanak.tt9.db.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+
+import io.github.sspanak.tt9.util.Logger;
+
+/**
+ * A small pool of read-only connections for the suggestion queries. The database is in WAL mode, so
+ * the readers see the last committed data and never wait for the connection used for writing, even
+ * during a long import. A single read-only connection would still make the reads wait for each other,
+ * for example, the current suggestions and the prefetching, so each reader gets its own connection.
+ */
+class ReaderPool {
+	private static final String LOG_TAG = ReaderPool.class.getSimpleName();
+
+	@NonNull private final String databasePath;
+	private final int maxReaders;
+
+	@NonNull private final ArrayDeque<SQLiteDatabase> idleReaders = new ArrayDeque<>();
+	private int openReaders = 0;
+
+
+	ReaderPool(@NonNull String databasePath, int maxReaders) {
+		this.databasePath = databasePath;
+		this.maxReaders = maxReaders;
+	}
+
+
+	/**
+	 * Returns an idle connection, opens a new one, or waits until another reader releases one.
+	 * Returns null, if a connection can not be opened, or if waiting was interrupted.
+	 */
+	@Nullable
+	synchronized SQLiteDatabase acquire() {
+		while (idleReaders.isEmpty() && openReaders >= maxReaders) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+
+		if (!idleReaders.isEmpty()) {
+			return idleReaders.pop();
+		}
+
+		try {
+			SQLiteDatabase reader = SQLiteDatabase.openDatabase(databasePath, null, SQLiteDatabase.OPEN_READONLY);
+			openReaders++;
+			Logger.d(LOG_TAG, "Opened read-only connection: " + openReaders + "/" + maxReaders);
+			return reader;
+		} catch (Exception e) {
+			Logger.w(LOG_TAG, "Could not open a read-only connection. " + e.getMessage());
+			return null;
+		}
+	}
+
+
+	synchronized void release(@NonNull SQLiteDatabase reader) {
+		idleReaders.push(reader);
+		notifyAll();
+	}
+}
@@ -10,20 +10,23 @@ import io.github.sspanak.tt9.BuildConfig;
 import io.github.sspanak.tt9.languages.EmojiLanguage;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.languages.LanguageCollection;
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
 import io.github.sspanak.tt9.util.Logger;
 
 public class SQLiteOpener extends SQLiteOpenHelper {
 	private static final String LOG_TAG = SQLiteOpener.class.getSimpleName();
-	private static final String DATABASE_NAME = "tt9.db";
+	static final String DATABASE_NAME = "tt9.db";
 	private static final int DATABASE_VERSION = BuildConfig.VERSION_CODE;
 
 	private static SQLiteOpener self;
 	private SQLiteDatabase db;
+	private final ReaderPool readers;
 
 	private final ArrayList<Language> allLanguages;
 
 	private SQLiteOpener(Context context) {
 		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+		readers = new ReaderPool(context.getDatabasePath(DATABASE_NAME).getPath(), SettingsStore.DATABASE_READERS);
 		allLanguages = new ArrayList<>(LanguageCollection.getAll());
 		allLanguages.add(new EmojiLanguage());
 	}
@@ -62,12 +65,21 @@ public class SQLiteOpener extends SQLiteOpenHelper {
 				continue;
 			}
 
-			try {
-				db.execSQL(migration.query);
-				Logger.d(LOG_TAG, "Migration succeeded: '" + migration.query);
-			} catch (Exception e) {
-				Logger.e(LOG_TAG, "Ignoring migration: '" + migration.query + "'. ");
-			}
+			runMigration(db, migration.query);
+		}
+
+		for (String query : Tables.getWordPairsMigrations(allLanguages)) {
+			runMigration(db, query);
+		}
+	}
+
+
+	private void runMigration(SQLiteDatabase db, String query) {
+		try {
+			db.execSQL(query);
+			Logger.d(LOG_TAG, "Migration succeeded: '" + query);
+		} catch (Exception e) {
+			Logger.e(LOG_TAG, "Ignoring migration: '" + query + "'. ");
 		}
 	}
 
@@ -80,6 +92,25 @@ public class SQLiteOpener extends SQLiteOpenHelper {
 	}
 
 
+	/**
+	 * Returns a read-only connection for the suggestion queries, so that they never wait for the one
+	 * used for writing. Each reader must return its connection using releaseReader(), as soon as it is
+	 * done. If no read-only connection can be opened, the main one is returned.
+	 */
+	public SQLiteDatabase acquireReader() {
+		SQLiteDatabase mainDb = getDb(); // make sure the database is created and upgraded before reading from it
+		SQLiteDatabase reader = readers.acquire();
+		return reader != null ? reader : mainDb;
+	}
+
+
+	public void releaseReader(SQLiteDatabase reader) {
+		if (reader != null && reader != db) {
+			readers.release(reader);
+		}
+	}
+
+
 	public void beginTransaction() {
 		if (db != null) {
 			db.beginTransactionNonExclusive();
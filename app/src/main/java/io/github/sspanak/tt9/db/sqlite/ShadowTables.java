@@ -0,0 +1,118 @@
+package io.github.sspanak.tt9.db.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import io.github.sspanak.tt9.languages.Language;
+
+/**
+ * The dictionaries are imported into separate "shadow" tables, while the suggestions are still loaded
+ * from the current ones. When the import is complete, the shadow tables are indexed and then they
+ * replace the current ones in a single short transaction, so a failure at any point before that
+ * leaves the current words intact.
+ *
+ * The progress is saved in the same transaction as each batch of words. If the import is interrupted,
+ * it continues from the last saved batch the next time, as long as the dictionary file is the same.
+ */
+public class ShadowTables {
+	public static class Progress {
+		public final int positionShift;
+		public final int words;
+
+		private Progress(int positionShift, int words) {
+			this.positionShift = positionShift;
+			this.words = words;
+		}
+	}
+
+
+	/**
+	 * Returns the progress of an unfinished import of the given dictionary file, or null, if there is
+	 * nothing to continue.
+	 */
+	@Nullable
+	public static Progress getProgress(@NonNull SQLiteDatabase db, int langId, @NonNull String fileHash) {
+		String sql =
+			"SELECT positionShift, words FROM " + Tables.IMPORT_PROGRESS +
+			" WHERE langId = ? AND fileHash = ? AND EXISTS (SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?)";
+		try (Cursor cursor = db.rawQuery(sql, new String[] { String.valueOf(langId), fileHash, Tables.getShadowWords(langId) })) {
+			return cursor.moveToFirst() ? new Progress(cursor.getInt(0), cursor.getInt(1)) : null;
+		}
+	}
+
+
+	public static void saveProgress(@NonNull SQLiteDatabase db, int langId, @NonNull String fileHash, int positionShift, int words) {
+		SQLiteStatement query = CompiledQueryCache.get(db, "REPLACE INTO " + Tables.IMPORT_PROGRESS + " (langId, fileHash, positionShift, words) VALUES (?, ?, ?, ?)");
+		query.bindLong(1, langId);
+		query.bindString(2, fileHash);
+		query.bindLong(3, positionShift);
+		query.bindLong(4, words);
+		query.execute();
+	}
+
+
+	/**
+	 * Creates empty shadow tables for a new import, discarding any unfinished one.
+	 */
+	public static void create(@NonNull SQLiteDatabase db, int langId) {
+		drop(db, langId);
+		for (String query : Tables.getCreateShadowQueries(langId)) {
+			db.execSQL(query);
+		}
+	}
+
+
+	public static void drop(@NonNull SQLiteDatabase db, int langId) {
+		db.execSQL("DROP TABLE IF EXISTS " + Tables.getShadowWords(langId));
+		db.execSQL("DROP TABLE IF EXISTS " + Tables.getShadowWordPositions(langId));
+		db.delete(Tables.IMPORT_PROGRESS, "langId = ?", new String[] { String.valueOf(langId) });
+	}
+
+
+	/**
+	 * Creates the indexes of the shadow tables. This takes a while, so it must be done in a separate
+	 * transaction before swap(), to keep the current tables available for typing in the meantime.
+	 */
+	public static void createIndexes(@NonNull SQLiteDatabase db, int langId) {
+		Tables.createShadowIndexes(db, langId);
+	}
+
+
+	/**
+	 * Returns the number of words in the shadow tables and their estimated size in bytes:
+	 * { words, bytes }. It takes a full scan, so it must be called before swap(), outside of its
+	 * transaction (see: UpdateOps.updateWordCount()).
+	 */
+	@NonNull
+	public static long[] measure(@NonNull SQLiteDatabase db, int langId) {
+		return ReadOps.measureTables(db, Tables.getShadowWords(langId), Tables.getShadowWordPositions(langId));
+	}
+
+
+	/**
+	 * Moves the custom words to the shadow tables and replaces the current tables with them. The
+	 * custom words, which are already in the new dictionary, are removed. Then, the import progress is
+	 * cleared. The shadow tables must be indexed already (see: createIndexes()), so that this only
+	 * renames them. Must be called in a transaction.
+	 */
+	public static void swap(@NonNull SQLiteDatabase db, @NonNull Language language) {
+		final int langId = language.getId();
+		final String words = Tables.getWords(langId);
+		final String positions = Tables.getWordPositions(langId);
+		final String shadowWords = Tables.getShadowWords(langId);
+
+		DeleteOps.purgeCustomWords(db, langId, shadowWords);
+		InsertOps.restoreCustomWords(db, langId, shadowWords);
+
+		db.execSQL("DROP TABLE IF EXISTS " + words);
+		db.execSQL("DROP TABLE IF EXISTS " + positions);
+		db.execSQL("ALTER TABLE " + shadowWords + " RENAME TO " + words);
+		db.execSQL("ALTER TABLE " + Tables.getShadowWordPositions(langId) + " RENAME TO " + positions);
+
+		db.delete(Tables.IMPORT_PROGRESS, "langId = ?", new String[] { String.valueOf(langId) });
+	}
+}
@@ -12,82 +12,152 @@ public class Tables {
 
 	static final String LANGUAGES_META = "languages_meta";
 	static final String CUSTOM_WORDS = "custom_words";
+	static final String CUSTOM_WORDS_META = "custom_words_meta";
+	static final String IMPORT_PROGRESS = "import_progress";
 	private static final String POSITIONS_TABLE_BASE_NAME = "word_positions_";
 	private static final String WORDS_TABLE_BASE_NAME = "words_";
 	private static final String WORD_PAIRS_TABLE_BASE_NAME = "word_pairs_";
+	private static final String SHADOW_TABLE_SUFFIX = "_new";
+	private static final String POSITIONS_INDEX_BASE_NAME = "idx_sequence_start_";
+	private static final String WORDS_INDEX_BASE_NAME = "idx_position_";
+	private static final String WORDS_LOOKUP_INDEX_BASE_NAME = "idx_word_";
 
 	static String getWords(int langId) { return WORDS_TABLE_BASE_NAME + langId; }
 	static String getWordPositions(int langId) { return POSITIONS_TABLE_BASE_NAME + langId; }
 	static String getWordPairs(int langId) { return WORD_PAIRS_TABLE_BASE_NAME + langId; }
+	static String getShadowWords(int langId) { return getWords(langId) + SHADOW_TABLE_SUFFIX; }
+	static String getShadowWordPositions(int langId) { return getWordPositions(langId) + SHADOW_TABLE_SUFFIX; }
 
 
 	static String[] getCreateQueries(ArrayList<Language> languages) {
 		int languageCount = languages.size();
-		String[] queries = new String[languageCount * 3 + 3];
+		String[] queries = new String[languageCount * 4 + 8];
 
 		queries[0] = createCustomWords();
 		queries[1] = createCustomWordsIndex();
 		queries[2] = createLanguagesMeta();
+		queries[3] = createCustomWordsMeta();
+		queries[4] = initCustomWordsMeta();
+		queries[5] = createCustomWordsInsertTrigger();
+		queries[6] = createCustomWordsDeleteTrigger();
+		queries[7] = createImportProgress();
 
-		int queryId = 3;
+		int queryId = 8;
 		for (Language language : languages) {
 			queries[queryId++] = createWordsTable(language.getId());
 			queries[queryId++] = createWordPositions(language.getId());
 			queries[queryId++] = createWordPairs(language.getId());
+			queries[queryId++] = createWordPairsIndex(language.getId());
 		}
 
 		return queries;
 	}
 
 
-	public static void createWordIndex(@NonNull SQLiteDatabase db, @NonNull Language language) {
-		CompiledQueryCache.execute(db, createWordsIndex(language.getId()));
+	/**
+	 * The tables required for importing a dictionary into a separate database file.
+	 */
+	static String[] getCreateImportQueries(int langId) {
+		return new String[] { createLanguagesMeta(), createWordsTable(langId), createWordPositions(langId) };
 	}
 
-	public static void createPositionIndex(@NonNull SQLiteDatabase db, @NonNull Language language) {
-		CompiledQueryCache.execute(db, createWordsPositionsIndex(language.getId()));
+
+	/**
+	 * The tables where a dictionary is imported, before replacing the current ones (see: ShadowTables).
+	 */
+	static String[] getCreateShadowQueries(int langId) {
+		return new String[] { createWordsTable(getShadowWords(langId)), createWordPositions(getShadowWordPositions(langId)) };
+	}
+
+
+	/**
+	 * Indexes the shadow tables, while the current ones are still in use. The index names are unique
+	 * in the entire database and SQLite can not rename them, so when a name is taken by the current
+	 * tables, the shadow table suffix is added. The indexes keep their names after the shadow tables
+	 * replace the current ones, so the next import gets the names without a suffix.
+	 */
+	public static void createShadowIndexes(@NonNull SQLiteDatabase db, int langId) {
+		final String words = getShadowWords(langId);
+		final String positions = getShadowWordPositions(langId);
+
+		db.execSQL(createWordsIndex(words, getIndexName(db, WORDS_INDEX_BASE_NAME + langId, words)));
+		db.execSQL(createWordsLookupIndex(words, getIndexName(db, WORDS_LOOKUP_INDEX_BASE_NAME + langId, words)));
+		db.execSQL(createWordsPositionsIndex(positions, getIndexName(db, POSITIONS_INDEX_BASE_NAME + langId, positions)));
 	}
 
+	/**
+	 * The word lookup index is not among the create queries, because they run on every upgrade, and
+	 * indexing all languages at once would keep the database locked for too long. Instead, the
+	 * missing indexes are created one by one in the background (see: getMissingLookupIndexQuery()).
+	 */
+	public static void createWordsLookupIndex(@NonNull SQLiteDatabase db, int langId) {
+		final String words = getWords(langId);
+		db.execSQL(createWordsLookupIndex(words, getIndexName(db, WORDS_LOOKUP_INDEX_BASE_NAME + langId, words)));
+	}
 
-	public static void dropIndexes(@NonNull SQLiteDatabase db, @NonNull Language language) {
-		CompiledQueryCache
-			.execute(db, dropWordsIndex(language.getId()))
-			.execute(dropWordPositionsIndex(language.getId()));
+	/**
+	 * Returns the base name, when it is free or already belongs to the given table, otherwise, the
+	 * name with the shadow table suffix (see: createShadowIndexes()).
+	 */
+	private static String getIndexName(@NonNull SQLiteDatabase db, @NonNull String baseName, @NonNull String table) {
+		String owner = CompiledQueryCache.simpleQueryForString(db, "SELECT tbl_name FROM sqlite_master WHERE type = 'index' AND name = '" + baseName + "'", null);
+		return owner == null || owner.equals(table) ? baseName : baseName + SHADOW_TABLE_SUFFIX;
 	}
 
 
+	/**
+	 * Returns the ID of a language, which has a words table, but no lookup index, or nothing, when
+	 * all languages are indexed.
+	 */
+	static String getMissingLookupIndexQuery() {
+		final String langId = "SUBSTR(tbl.name, " + (WORDS_TABLE_BASE_NAME.length() + 1) + ")";
+		return
+			"SELECT " + langId + " FROM sqlite_master AS tbl" +
+			" WHERE type = 'table' AND name GLOB '" + WORDS_TABLE_BASE_NAME + "[0-9]*' AND name NOT GLOB '*" + SHADOW_TABLE_SUFFIX + "'" +
+			" AND NOT EXISTS (SELECT 1 FROM sqlite_master AS idx WHERE idx.type = 'index' AND idx.tbl_name = tbl.name AND idx.name GLOB '" + WORDS_LOOKUP_INDEX_BASE_NAME + "*')" +
+			" LIMIT 1";
+	}
+
 	private static String createWordsTable(int langId) {
+		return createWordsTable(getWords(langId));
+	}
+
+	private static String createWordsTable(@NonNull String table) {
 		return
-			"CREATE TABLE IF NOT EXISTS " + getWords(langId) + " (" +
+			"CREATE TABLE IF NOT EXISTS " + table + " (" +
 				"frequency INTEGER NOT NULL DEFAULT 0, " +
 				"position INTEGER NOT NULL, " +
 				"word TEXT NOT NULL" +
 			")";
 	}
 
-	private static String createWordsIndex(int langId) {
-		return "CREATE INDEX IF NOT EXISTS idx_position_" + langId + " ON " + getWords(langId) + " (position, word)";
+	private static String createWordsIndex(@NonNull String table, @NonNull String name) {
+		return "CREATE INDEX IF NOT EXISTS " + name + " ON " + table + " (position, word)";
 	}
 
-	private static String dropWordsIndex(int langId) {
-		return "DROP INDEX IF EXISTS idx_position_" + langId;
+	/**
+	 * Allows finding words by their exact spelling without scanning the entire table, for example,
+	 * when checking if a custom word already exists or when deleting one.
+	 */
+	private static String createWordsLookupIndex(@NonNull String table, @NonNull String name) {
+		return "CREATE INDEX IF NOT EXISTS " + name + " ON " + table + " (word)";
 	}
 
 	private static String createWordPositions(int langId) {
+		return createWordPositions(getWordPositions(langId));
+	}
+
+	private static String createWordPositions(@NonNull String table) {
 		return
-			"CREATE TABLE IF NOT EXISTS " + getWordPositions(langId) + " (" +
+			"CREATE TABLE IF NOT EXISTS " + table + " (" +
 				"sequence TEXT NOT NULL, " +
 				"start INTEGER NOT NULL, " +
 				"end INTEGER NOT NULL" +
 			")";
 	}
 
-	private static String createWordsPositionsIndex(int langId) {
-		return "CREATE INDEX IF NOT EXISTS idx_sequence_start_" + langId + " ON " + getWordPositions(langId) + " (sequence, `start`)";
-	}
-
-	private static String dropWordPositionsIndex(int langId) {
-		return "DROP INDEX IF EXISTS idx_sequence_start_" + langId;
+	private static String createWordsPositionsIndex(@NonNull String table, @NonNull String name) {
+		return "CREATE INDEX IF NOT EXISTS " + name + " ON " + table + " (sequence, `start`)";
 	}
 
 	private static String createCustomWords() {
@@ -103,11 +173,70 @@ public class Tables {
 		return "CREATE INDEX IF NOT EXISTS idx_langId_sequence ON " + CUSTOM_WORDS + " (langId, sequence)";
 	}
 
+	/**
+	 * A single-row table with the number of custom words. It is kept up to date by the triggers
+	 * below, so counting the words does not require scanning the custom words table.
+	 */
+	private static String createCustomWordsMeta() {
+		return "CREATE TABLE IF NOT EXISTS " + CUSTOM_WORDS_META + " (wordCount INTEGER NOT NULL DEFAULT 0)";
+	}
+
+	private static String initCustomWordsMeta() {
+		return
+			"INSERT INTO " + CUSTOM_WORDS_META + " (wordCount) " +
+			"SELECT (SELECT COUNT(*) FROM " + CUSTOM_WORDS + ") WHERE NOT EXISTS (SELECT 1 FROM " + CUSTOM_WORDS_META + ")";
+	}
+
+	private static String createCustomWordsInsertTrigger() {
+		return
+			"CREATE TRIGGER IF NOT EXISTS trg_custom_words_insert AFTER INSERT ON " + CUSTOM_WORDS +
+			" BEGIN UPDATE " + CUSTOM_WORDS_META + " SET wordCount = wordCount + 1; END";
+	}
+
+	private static String createCustomWordsDeleteTrigger() {
+		return
+			"CREATE TRIGGER IF NOT EXISTS trg_custom_words_delete AFTER DELETE ON " + CUSTOM_WORDS +
+			" BEGIN UPDATE " + CUSTOM_WORDS_META + " SET wordCount = wordCount - 1; END";
+	}
+
 	private static String createWordPairs(int langId) {
 		return "CREATE TABLE IF NOT EXISTS " + getWordPairs(langId) + " (" +
 			"word1 TEXT NOT NULL, " +
 			"word2 TEXT NOT NULL, " +
-			"sequence2 TEXT NOT NULL " +
+			"sequence2 TEXT NOT NULL, " +
+			"count INTEGER NOT NULL DEFAULT 1" +
+		")";
+	}
+
+	/**
+	 * Allows saving only the changed pairs, without scanning the entire table for each one.
+	 */
+	private static String createWordPairsIndex(int langId) {
+		return "CREATE INDEX IF NOT EXISTS idx_pair_" + langId + " ON " + getWordPairs(langId) + " (word1, sequence2)";
+	}
+
+	/**
+	 * The pair tables are per language, so their migrations can not be in Migration.LIST.
+	 */
+	static String[] getWordPairsMigrations(ArrayList<Language> languages) {
+		String[] queries = new String[languages.size()];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = "ALTER TABLE " + getWordPairs(languages.get(i).getId()) + " ADD COLUMN count INTEGER NOT NULL DEFAULT 1";
+		}
+
+		return queries;
+	}
+
+	/**
+	 * The progress of the unfinished dictionary imports, so that they can continue from where they
+	 * stopped (see: ShadowTables).
+	 */
+	private static String createImportProgress() {
+		return "CREATE TABLE IF NOT EXISTS " + IMPORT_PROGRESS + " (" +
+			"langId INTEGER UNIQUE NOT NULL, " +
+			"fileHash TEXT NOT NULL, " +
+			"positionShift INTEGER NOT NULL, " +
+			"words INTEGER NOT NULL " +
 		")";
 	}
 
@@ -116,7 +245,11 @@ public class Tables {
 			"langId INTEGER UNIQUE NOT NULL, " +
 			"positionsToNormalize TEXT NULL," +
 			"fileHash TEXT NOT NULL DEFAULT 0, " +
-			"maxWordsPerSequence INTEGER NOT NULL DEFAULT -1 " +
+			"maxWordsPerSequence INTEGER NOT NULL DEFAULT -1, " +
+			"wordCount INTEGER NOT NULL DEFAULT -1, " +
+			"importTime INTEGER NOT NULL DEFAULT 0, " +
+			"isDeltaUpdated INTEGER NOT NULL DEFAULT 0, " +
+			"tableSize INTEGER NOT NULL DEFAULT -1 " +
 		")";
 	}
 }
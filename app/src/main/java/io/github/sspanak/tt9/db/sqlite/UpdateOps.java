@@ -6,6 +6,7 @@ import android.database.sqlite.SQLiteStatement;
 import androidx.annotation.NonNull;
 
 import io.github.sspanak.tt9.db.entities.NormalizationList;
+import io.github.sspanak.tt9.db.wordPairs.WordPair;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
 import io.github.sspanak.tt9.util.Logger;
@@ -43,10 +44,12 @@ public class UpdateOps {
 			return;
 		}
 
+		WordPositionRanges ranges = WordPositionRanges.parse(normalizationList.positions);
 		db.execSQL(
 			"UPDATE " + Tables.getWords(normalizationList.langId) +
 			" SET frequency = frequency / " + SettingsStore.WORD_FREQUENCY_NORMALIZATION_DIVIDER +
-			" WHERE position IN (" + normalizationList.positions + ")"
+			" WHERE " + ranges.toSql("position"),
+			ranges.getArguments()
 		);
 
 		SQLiteStatement query = CompiledQueryCache.get(db, "UPDATE " + Tables.LANGUAGES_META + " SET positionsToNormalize = NULL WHERE langId = ?");
@@ -55,10 +58,109 @@ public class UpdateOps {
 	}
 
 
+	/**
+	 * Stores the word count and the table size of the given language and marks it as just imported.
+	 * Must be called at the end of the import, in the same transaction as ShadowTables.swap().
+	 * "dictionaryWords" and "dictionaryBytes" are measured beforehand (see: ShadowTables.measure()),
+	 * so that the transaction does not have to scan the new tables. Only the custom words, restored
+	 * by the swap, are counted here. The table size is the data size in bytes, plus about 8 bytes per
+	 * row for the numbers and the record headers. It does not include the indexes and is not updated
+	 * when adding custom words, so it is only an estimate.
+	 */
+	public static void updateWordCount(@NonNull SQLiteDatabase db, @NonNull Language language, long dictionaryWords, long dictionaryBytes) {
+		final String customWords = "FROM " + Tables.CUSTOM_WORDS + " WHERE langId = ?";
+
+		SQLiteStatement query = CompiledQueryCache.get(
+			db,
+			"UPDATE " + Tables.LANGUAGES_META +
+			" SET wordCount = ? + (SELECT COUNT(*) " + customWords + "), importTime = ?" +
+			", tableSize = ? + (SELECT IFNULL(SUM(LENGTH(CAST(word AS BLOB))), 0) + COUNT(*) * 8 " + customWords + ")" +
+			" WHERE langId = ?"
+		);
+		query.bindLong(1, dictionaryWords);
+		query.bindLong(2, language.getId());
+		query.bindLong(3, System.currentTimeMillis());
+		query.bindLong(4, dictionaryBytes);
+		query.bindLong(5, language.getId());
+		query.bindLong(6, language.getId());
+		query.execute();
+	}
+
+
+	/**
+	 * Marks the language as updated to the given dictionary version using a delta file. The positions
+	 * no longer match the precompiled index, so it will not be used until the next full import.
+	 */
+	public static void setDeltaUpdated(@NonNull SQLiteDatabase db, int langId, @NonNull String fileHash, int maxWordsPerSequence) {
+		SQLiteStatement query = CompiledQueryCache.get(
+			db,
+			"UPDATE " + Tables.LANGUAGES_META +
+			" SET fileHash = ?, maxWordsPerSequence = MAX(maxWordsPerSequence, ?), isDeltaUpdated = 1, importTime = ?" +
+			" WHERE langId = ?"
+		);
+		query.bindString(1, fileHash);
+		query.bindLong(2, maxWordsPerSequence);
+		query.bindLong(3, System.currentTimeMillis());
+		query.bindLong(4, langId);
+		query.execute();
+	}
+
+
+	public static void setTableSize(@NonNull SQLiteDatabase db, int langId, long tableSize) {
+		SQLiteStatement query = CompiledQueryCache.get(db, "UPDATE " + Tables.LANGUAGES_META + " SET tableSize = ? WHERE langId = ?");
+		query.bindLong(1, tableSize);
+		query.bindLong(2, langId);
+		query.execute();
+	}
+
+
+	public static void setWordCount(@NonNull SQLiteDatabase db, int langId, long wordCount) {
+		SQLiteStatement query = CompiledQueryCache.get(db, "UPDATE " + Tables.LANGUAGES_META + " SET wordCount = ? WHERE langId = ?");
+		query.bindLong(1, wordCount);
+		query.bindLong(2, langId);
+		query.execute();
+	}
+
+
+	/**
+	 * Adds or subtracts the given number of words, unless the count is unknown.
+	 */
+	static void changeWordCount(@NonNull SQLiteDatabase db, int langId, int delta) {
+		SQLiteStatement query = CompiledQueryCache.get(db, "UPDATE " + Tables.LANGUAGES_META + " SET wordCount = wordCount + ? WHERE langId = ? AND wordCount >= 0");
+		query.bindLong(1, delta);
+		query.bindLong(2, langId);
+		query.execute();
+	}
+
+
 	public static void scheduleNormalization(@NonNull SQLiteDatabase db, @NonNull Language language, @NonNull String positions) {
 		SQLiteStatement query = CompiledQueryCache.get(db, "UPDATE " + Tables.LANGUAGES_META + " SET positionsToNormalize = ? WHERE langId = ?");
 		query.bindString(1, positions);
 		query.bindLong(2, language.getId());
 		query.execute();
 	}
+
+
+	/**
+	 * Updates the word2 and the count of an existing pair, or adds it, if it is new.
+	 */
+	public static void saveWordPair(@NonNull SQLiteDatabase db, int langId, @NonNull WordPair pair) {
+		final String table = Tables.getWordPairs(langId);
+
+		SQLiteStatement update = CompiledQueryCache.get(db, "UPDATE " + table + " SET word2 = ?, count = ? WHERE word1 = ? AND sequence2 = ?");
+		update.bindString(1, pair.getWord2());
+		update.bindLong(2, pair.getCount());
+		update.bindString(3, pair.getWord1());
+		update.bindString(4, pair.getSequence2());
+		if (update.executeUpdateDelete() > 0) {
+			return;
+		}
+
+		SQLiteStatement insert = CompiledQueryCache.get(db, "INSERT INTO " + table + " (word1, word2, sequence2, count) VALUES (?, ?, ?, ?)");
+		insert.bindString(1, pair.getWord1());
+		insert.bindString(2, pair.getWord2());
+		insert.bindString(3, pair.getSequence2());
+		insert.bindLong(4, pair.getCount());
+		insert.execute();
+	}
 }
@@ -0,0 +1,162 @@
+package io.github.sspanak.tt9.db.sqlite;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Parses a list of word positions generated by WordPositionsStringBuilder, where each item is either
+ * a single position: "5", or a range: "5:9", and converts it into an SQL condition. Using ranges
+ * instead of expanding them into long "IN(...)" lists allows SQLite to reuse the compiled queries
+ * and to search the position index with a few range scans.
+ */
+class WordPositionRanges {
+	private static final int MAX_BOUND_RANGES = 256; // SQLite supports up to 999 parameters on older Androids
+
+	private final long[] ranges;
+	private final int size;
+
+
+	private WordPositionRanges(long[] ranges, int size) {
+		this.ranges = ranges;
+		this.size = size;
+	}
+
+
+	/**
+	 * Parses the positions string, then sorts and merges the overlapping and the adjacent ranges.
+	 */
+	@NonNull
+	static WordPositionRanges parse(@NonNull String positions) {
+		long[] ranges = new long[8];
+		int size = 0;
+
+		for (int i = 0, length = positions.length(); i < length; ) {
+			int itemEnd = positions.indexOf(',', i);
+			itemEnd = itemEnd < 0 ? length : itemEnd;
+
+			int separator = positions.indexOf(':', i);
+			int start, end;
+			if (separator > i && separator < itemEnd) {
+				start = Integer.parseInt(positions.substring(i, separator));
+				end = Integer.parseInt(positions.substring(separator + 1, itemEnd));
+			} else {
+				start = end = Integer.parseInt(positions.substring(i, itemEnd));
+			}
+
+			if (size == ranges.length) {
+				ranges = Arrays.copyOf(ranges, size * 2);
+			}
+			// pack start and end in one long, so that sorting keeps them together
+			ranges[size++] = ((long) start << 32) | (end & 0xFFFFFFFFL);
+
+			i = itemEnd + 1;
+		}
+
+		Arrays.sort(ranges, 0, size);
+
+		int merged = 0;
+		for (int i = 0; i < size; i++) {
+			if (merged > 0 && getStart(ranges[i]) <= (long) getEnd(ranges[merged - 1]) + 1) {
+				int end = Math.max(getEnd(ranges[merged - 1]), getEnd(ranges[i]));
+				ranges[merged - 1] = ((long) getStart(ranges[merged - 1]) << 32) | (end & 0xFFFFFFFFL);
+			} else {
+				ranges[merged++] = ranges[i];
+			}
+		}
+
+		return new WordPositionRanges(ranges, merged);
+	}
+
+
+	private static int getStart(long range) {
+		return (int) (range >> 32);
+	}
+
+
+	private static int getEnd(long range) {
+		return (int) range;
+	}
+
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+
+	/**
+	 * The custom words have negative positions, so after sorting, they are always first.
+	 */
+	boolean hasCustomPositions() {
+		return size > 0 && getStart(ranges[0]) < 0;
+	}
+
+
+	/**
+	 * The total amount of positions in all ranges. Since "position" is indexed, this is also the
+	 * maximum number of rows the words query has to read.
+	 */
+	long countPositions() {
+		long count = 0;
+		for (int i = 0; i < size; i++) {
+			count += (long) getEnd(ranges[i]) - getStart(ranges[i]) + 1;
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * Returns true when the condition can use query parameters. Otherwise, the values are inlined.
+	 */
+	boolean canBind() {
+		return size <= MAX_BOUND_RANGES;
+	}
+
+
+	/**
+	 * Generates a condition like: "(position BETWEEN ? AND ? OR position BETWEEN ? AND ?)". To keep
+	 * the number of different queries low, the number of ranges is rounded up to the next power
+	 * of 2 and the extra ones are filled with empty ranges by getArguments().
+	 */
+	@NonNull
+	String toSql(@NonNull String column) {
+		StringBuilder sql = new StringBuilder("(");
+
+		if (canBind()) {
+			for (int i = 0, slots = getSlots(); i < slots; i++) {
+				sql.append(i > 0 ? " OR " : "").append(column).append(" BETWEEN ? AND ?");
+			}
+		} else {
+			for (int i = 0; i < size; i++) {
+				sql.append(i > 0 ? " OR " : "").append(column).append(" BETWEEN ").append(getStart(ranges[i])).append(" AND ").append(getEnd(ranges[i]));
+			}
+		}
+
+		return sql.append(")").toString();
+	}
+
+
+	/**
+	 * Returns the arguments for the condition generated by toSql().
+	 */
+	@NonNull
+	String[] getArguments() {
+		if (!canBind()) {
+			return new String[0];
+		}
+
+		String[] args = new String[getSlots() * 2];
+		for (int i = 0; i < args.length / 2; i++) {
+			args[2 * i] = i < size ? String.valueOf(getStart(ranges[i])) : "1";
+			args[2 * i + 1] = i < size ? String.valueOf(getEnd(ranges[i])) : "0";
+		}
+
+		return args;
+	}
+
+
+	private int getSlots() {
+		return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+	}
+}
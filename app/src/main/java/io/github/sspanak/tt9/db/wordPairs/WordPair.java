@@ -1,7 +1,6 @@
 package io.github.sspanak.tt9.db.wordPairs;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
@@ -12,14 +11,20 @@ public class WordPair {
 	@NonNull private final String word1;
 	@NonNull private final String word2;
 	private final String sequence2;
-	private Integer hash = null;
+	private final int count;
 
 
 	public WordPair(Language language, String word1, String word2, String sequence2) {
+		this(language, word1, word2, sequence2, 1);
+	}
+
+
+	public WordPair(Language language, String word1, String word2, String sequence2, int count) {
 		this.language = language;
 		this.word1 = word1 != null ? word1.toLowerCase(language.getLocale()) : "";
 		this.word2 = word2 != null ? word2.toLowerCase(language.getLocale()) : "";
 		this.sequence2 = sequence2;
+		this.count = count;
 	}
 
 
@@ -34,30 +39,30 @@ public class WordPair {
 	}
 
 
+	@NonNull
+	public String getWord1() {
+		return word1;
+	}
+
+
 	@NonNull
 	public String getWord2() {
 		return word2;
 	}
 
 
-	@Override
-	public int hashCode() {
-		if (hash == null) {
-			hash = !word1.isEmpty() && sequence2 != null ? (word1 + "," + sequence2).hashCode() : 0;
-		}
-
-		return hash;
+	public String getSequence2() {
+		return sequence2;
 	}
 
 
-	@Override
-	public boolean equals(@Nullable Object obj) {
-		return obj instanceof WordPair && obj.hashCode() == hashCode();
+	public int getCount() {
+		return count;
 	}
 
 
 	public String toSqlRow() {
-		return "('" + word1 + "','" + word2 + "','" + sequence2 + "')";
+		return "('" + word1 + "','" + word2 + "','" + sequence2 + "'," + count + ")";
 	}
 
 
@@ -6,7 +6,6 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -14,17 +13,19 @@ import io.github.sspanak.tt9.db.BaseSyncStore;
 import io.github.sspanak.tt9.db.sqlite.DeleteOps;
 import io.github.sspanak.tt9.db.sqlite.InsertOps;
 import io.github.sspanak.tt9.db.sqlite.ReadOps;
+import io.github.sspanak.tt9.db.sqlite.UpdateOps;
 import io.github.sspanak.tt9.db.words.DictionaryLoader;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
 import io.github.sspanak.tt9.util.Logger;
+import io.github.sspanak.tt9.util.Metrics;
 import io.github.sspanak.tt9.util.Timer;
 
 public class WordPairStore extends BaseSyncStore {
 	private static final String LOG_TAG = WordPairStore.class.getSimpleName();
 
 	// data
-	private final ConcurrentHashMap<Integer, HashMap<WordPair, WordPair>> pairs = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Integer, WordPairTable> pairs = new ConcurrentHashMap<>();
 
 	// timing
 	private long slowestAddTime = 0;
@@ -47,19 +48,24 @@ public class WordPairStore extends BaseSyncStore {
 			return;
 		}
 
-		HashMap<WordPair, WordPair> languagePairs = pairs.get(language.getId());
-		if (languagePairs == null) {
-			languagePairs = new HashMap<>();
-			pairs.put(language.getId(), languagePairs);
-		}
+		WordPairTable languagePairs = getOrCreate(language);
+		languagePairs.put(pair.getWord1(), pair.getWord2(), pair.getSequence2());
 
-		if (languagePairs.size() >= SettingsStore.WORD_PAIR_MAX) {
-			languagePairs.remove(languagePairs.keySet().iterator().next());
-		}
+		long time = Timer.stopNanos(ADD_TIMER_NAME);
+		Metrics.record("pairs.add", time);
+		Metrics.gauge("pairs.size." + language.getId(), languagePairs.size());
+		slowestAddTime = Math.max(slowestAddTime, time / 1000000);
+	}
 
-		languagePairs.put(pair, pair);
 
-		slowestAddTime = Math.max(slowestAddTime, Timer.stop(ADD_TIMER_NAME));
+	@NonNull
+	private WordPairTable getOrCreate(@NonNull Language language) {
+		WordPairTable languagePairs = pairs.get(language.getId());
+		if (languagePairs == null) {
+			languagePairs = pairs.computeIfAbsent(language.getId(), k -> new WordPairTable(language, SettingsStore.WORD_PAIR_MAX));
+		}
+
+		return languagePairs;
 	}
 
 
@@ -77,17 +83,15 @@ public class WordPairStore extends BaseSyncStore {
 		String SEARCH_TIMER_NAME = "word_pair_search";
 		Timer.start(SEARCH_TIMER_NAME);
 
-		HashMap<WordPair, WordPair> languagePairs = pairs.get(language.getId());
-
-		if (languagePairs == null) {
-			slowestSearchTime = Math.max(slowestSearchTime, Timer.stop(SEARCH_TIMER_NAME));
-			return null;
-		}
+		WordPairTable languagePairs = pairs.get(language.getId());
 
-		WordPair pair = languagePairs.get(new WordPair(language, word1, null, sequence2));
-		String word2 = pair == null || pair.getWord2().isEmpty() ? null : pair.getWord2();
+		WordPair pair = new WordPair(language, word1, null, sequence2);
+		String word2 = languagePairs == null || pair.getWord1().isEmpty() || sequence2 == null ? null : languagePairs.get(pair.getWord1(), sequence2);
 
-		slowestSearchTime = Math.max(slowestSearchTime, Timer.stop(SEARCH_TIMER_NAME));
+		long time = Timer.stopNanos(SEARCH_TIMER_NAME);
+		Metrics.record("pairs.search", time);
+		Metrics.count(word2 == null ? "pairs.search_misses" : "pairs.search_hits");
+		slowestSearchTime = Math.max(slowestSearchTime, time / 1000000);
 		return word2;
 	}
 
@@ -100,20 +104,52 @@ public class WordPairStore extends BaseSyncStore {
 		String SAVE_TIMER_NAME = "word_pair_save";
 		Timer.start(SAVE_TIMER_NAME);
 
-		for (Map.Entry<Integer, HashMap<WordPair, WordPair>> entry : pairs.entrySet()) {
-			int langId = entry.getKey();
-			HashMap<WordPair, WordPair> languagePairs = entry.getValue();
+		int totalChanges = 0;
+		for (Map.Entry<Integer, WordPairTable> entry : pairs.entrySet()) {
+			totalChanges += save(entry.getKey(), entry.getValue());
+		}
 
+		long currentTime = Timer.stop(SAVE_TIMER_NAME);
+		slowestSaveTime = Math.max(slowestSaveTime, currentTime);
+		Logger.d(LOG_TAG, "Saved " + totalChanges + " word pair changes in: " + currentTime + " ms");
+	}
+
+
+	/**
+	 * Writes only the pairs changed or removed since the previous save. After the counts have been
+	 * halved, or when the previous save has failed, all pairs of the language are written again.
+	 */
+	private int save(int langId, @NonNull WordPairTable languagePairs) {
+		ArrayList<WordPair> changed = new ArrayList<>();
+		ArrayList<WordPair> removed = new ArrayList<>();
+		boolean isFullSave = languagePairs.pollChanges(changed, removed);
+
+		if (changed.isEmpty() && removed.isEmpty() && !isFullSave) {
+			return 0;
+		}
+
+		try {
 			sqlite.beginTransaction();
-			DeleteOps.deleteWordPairs(sqlite.getDb(), langId);
-			InsertOps.insertWordPairs(sqlite.getDb(), langId, languagePairs.values());
+			if (isFullSave) {
+				DeleteOps.deleteWordPairs(sqlite.getDb(), langId);
+				InsertOps.insertWordPairs(sqlite.getDb(), langId, changed);
+			} else {
+				for (WordPair pair : removed) {
+					DeleteOps.deleteWordPair(sqlite.getDb(), langId, pair);
+				}
+				for (WordPair pair : changed) {
+					UpdateOps.saveWordPair(sqlite.getDb(), langId, pair);
+				}
+			}
 			sqlite.finishTransaction();
+		} catch (Exception e) {
+			sqlite.failTransaction();
+			languagePairs.requireFullSave();
+			Logger.e(LOG_TAG, "Failed saving the word pairs for language: " + langId + ". " + e.getMessage());
+			return 0;
 		}
 
-
-		long currentTime = Timer.stop(SAVE_TIMER_NAME);
-		slowestSaveTime = Math.max(slowestSaveTime, currentTime);
-		Logger.d(LOG_TAG, "Saved all word pairs in: " + currentTime + " ms");
+		return changed.size() + removed.size();
 	}
 
 
@@ -142,19 +178,26 @@ public class WordPairStore extends BaseSyncStore {
 				continue;
 			}
 
-			HashMap<WordPair, WordPair> wordPairs = pairs.get(language.getId());
-			if (wordPairs == null) {
-				wordPairs = new HashMap<>();
-				pairs.put(language.getId(), wordPairs);
-			} else if (!wordPairs.isEmpty()) {
+			WordPairTable wordPairs = getOrCreate(language);
+			if (wordPairs.size() > 0) {
 				continue;
 			}
 
-			int max = SettingsStore.WORD_PAIR_MAX - wordPairs.size();
-			ArrayList<WordPair> dbPairs = new ReadOps().getWordPairs(sqlite.getDb(), language, max);
-			for (WordPair pair : dbPairs) {
-				wordPairs.put(pair, pair);
+			// The pairs are read from the most to the least frequent. Adding them in reverse makes the
+			// frequent ones the most recent, so among equal counts, they are the last to be removed.
+			ArrayList<WordPair> dbPairs = new ReadOps().getWordPairs(sqlite.getDb(), language, SettingsStore.WORD_PAIR_MAX);
+			for (int i = dbPairs.size() - 1; i >= 0; i--) {
+				WordPair pair = dbPairs.get(i);
+				if (!pair.isInvalid()) {
+					wordPairs.putSaved(pair.getWord1(), pair.getWord2(), pair.getSequence2(), pair.getCount());
+				}
+			}
+
+			// there may be more pairs in the database, for example, if the limit was lowered
+			if (dbPairs.size() >= SettingsStore.WORD_PAIR_MAX) {
+				wordPairs.requireFullSave();
 			}
+			totalPairs += wordPairs.size();
 
 			Logger.d(LOG_TAG, "Loaded " + wordPairs.size() + " word pairs for language: " + language.getId());
 		}
@@ -172,7 +215,9 @@ public class WordPairStore extends BaseSyncStore {
 
 		Timer.start(LOG_TAG);
 
+		// the saves are incremental, so the pairs in memory must go too, or they would be partially saved again
 		for (Language language : languages) {
+			pairs.remove(language.getId());
 			DeleteOps.deleteWordPairs(sqlite.getDb(), language.getId());
 		}
 
@@ -188,12 +233,12 @@ public class WordPairStore extends BaseSyncStore {
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 
-		for (Map.Entry<Integer, HashMap<WordPair, WordPair>> entry : pairs.entrySet()) {
+		for (Map.Entry<Integer, WordPairTable> entry : pairs.entrySet()) {
 			int langId = entry.getKey();
-			HashMap<WordPair, WordPair> languagePairs = entry.getValue();
+			WordPairTable languagePairs = entry.getValue();
 
 			sb.append("Language ").append(langId).append(": ");
-			sb.append(languagePairs.size()).append("\n");
+			sb.append(languagePairs.size()).append(" (evicted: ").append(languagePairs.getEvictions()).append(")\n");
 		}
 
 		if (sb.length() == 0) {
@@ -0,0 +1,342 @@
+package io.github.sspanak.tt9.db.wordPairs;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.util.Metrics;
+
+/**
+ * The word pairs of one language, in an open-addressing hash table made of primitive arrays. The
+ * key is a 64-bit hash of (word1, sequence2) and each slot keeps the three strings of the pair too,
+ * which are used to verify the matches, so that hash collisions never return a wrong word.
+ *
+ * The table starts small and doubles when it is 3/4 full, until it can hold "maxSize" pairs. Then,
+ * when it is full, the least frequently used pair is removed. Like in Redis, it is chosen from a
+ * small sample of pairs, instead of keeping the pairs sorted, and if the counts are equal, the least
+ * recently used one goes. The counts are halved periodically, so that the pairs that were frequent
+ * long ago do not stay forever.
+ *
+ * The pairs changed or removed since the last save are tracked, so that only they are written to
+ * the database (see: pollChanges()).
+ */
+class WordPairTable {
+	private static final int EVICTION_SAMPLES = 16;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final char SEPARATOR = ',';
+
+	@NonNull private final Language language;
+	private final int maxSize;
+	private final int maxCapacity;
+	private int mask;
+
+	private long[] keys;
+	private String[] words1;
+	private String[] words2;
+	private String[] sequences2;
+	private int[] counts;
+	private int[] lastUsed;
+	private boolean[] changed;
+
+	@NonNull private ArrayList<WordPair> removed = new ArrayList<>();
+	private boolean isFullSaveNeeded = false;
+
+	private int size = 0;
+	private int clock = 0;
+	private int evictionHand = 0;
+	private int addsSinceAging = 0;
+	private long evictions = 0;
+
+
+	WordPairTable(@NonNull Language language, int maxSize) {
+		this.language = language;
+		this.maxSize = Math.max(maxSize, 1);
+
+		// keep the load factor below 0.75, so that the probe sequences stay short
+		maxCapacity = Integer.highestOneBit(this.maxSize * 4 / 3 + 1) << 1;
+		allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+	}
+
+
+	private void allocate(int capacity) {
+		mask = capacity - 1;
+		keys = new long[capacity];
+		words1 = new String[capacity];
+		words2 = new String[capacity];
+		sequences2 = new String[capacity];
+		counts = new int[capacity];
+		lastUsed = new int[capacity];
+		changed = new boolean[capacity];
+	}
+
+
+	/**
+	 * FNV-1a, followed by a MurmurHash3 finalizer, because the slot is picked using the lowest bits.
+	 * 0 marks the empty slots, so it is never returned.
+	 */
+	private static long hash(@NonNull String word1, @NonNull String sequence2) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0, length = word1.length(); i < length; i++) {
+			hash = (hash ^ word1.charAt(i)) * 0x100000001b3L;
+		}
+		hash = (hash ^ SEPARATOR) * 0x100000001b3L;
+		for (int i = 0, length = sequence2.length(); i < length; i++) {
+			hash = (hash ^ sequence2.charAt(i)) * 0x100000001b3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+
+		return hash == 0 ? 1 : hash;
+	}
+
+
+	/**
+	 * Returns the slot of the given pair, or when it does not exist, the negated free slot where it
+	 * should be added (~slot).
+	 */
+	private int find(long key, @NonNull String word1, @NonNull String sequence2) {
+		int slot = (int) key & mask;
+		while (keys[slot] != 0) {
+			if (keys[slot] == key && words1[slot].equals(word1) && sequences2[slot].equals(sequence2)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		return ~slot;
+	}
+
+
+	synchronized int size() {
+		return size;
+	}
+
+
+	synchronized long getEvictions() {
+		return evictions;
+	}
+
+
+	@Nullable
+	synchronized String get(@NonNull String word1, @NonNull String sequence2) {
+		int slot = find(hash(word1, sequence2), word1, sequence2);
+		return slot < 0 ? null : words2[slot];
+	}
+
+
+	/**
+	 * Adds a new pair, or increases the count of an existing one. When word1 and sequence2 are the
+	 * same, but word2 is different, the new word2 replaces the old one and its count starts over.
+	 */
+	synchronized void put(@NonNull String word1, @NonNull String word2, @NonNull String sequence2) {
+		long key = hash(word1, sequence2);
+		int slot = find(key, word1, sequence2);
+
+		if (slot >= 0) {
+			if (words2[slot].equals(word2)) {
+				counts[slot] = Math.max(counts[slot] + 1, counts[slot]);
+			} else {
+				words2[slot] = word2;
+				counts[slot] = 1;
+			}
+			lastUsed[slot] = ++clock;
+			changed[slot] = true;
+			age();
+			return;
+		}
+
+		add(key, word1, word2, sequence2, 1, true);
+		age();
+	}
+
+
+	/**
+	 * Adds a pair from the database, without marking it for saving and without aging the others.
+	 */
+	synchronized void putSaved(@NonNull String word1, @NonNull String word2, @NonNull String sequence2, int count) {
+		long key = hash(word1, sequence2);
+		if (find(key, word1, sequence2) < 0) {
+			add(key, word1, word2, sequence2, Math.max(count, 1), false);
+		}
+	}
+
+
+	private void add(long key, @NonNull String word1, @NonNull String word2, @NonNull String sequence2, int count, boolean isChanged) {
+		if (size >= maxSize) {
+			evict();
+		} else if (size >= keys.length * 3 / 4 && keys.length < maxCapacity) {
+			grow();
+		}
+
+		int slot = ~find(key, word1, sequence2);
+		keys[slot] = key;
+		words1[slot] = word1;
+		words2[slot] = word2;
+		sequences2[slot] = sequence2;
+		counts[slot] = count;
+		lastUsed[slot] = ++clock;
+		changed[slot] = isChanged;
+		size++;
+	}
+
+
+	/**
+	 * Doubles the capacity and adds the pairs again in their new slots.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		String[] oldWords1 = words1;
+		String[] oldWords2 = words2;
+		String[] oldSequences2 = sequences2;
+		int[] oldCounts = counts;
+		int[] oldLastUsed = lastUsed;
+		boolean[] oldChanged = changed;
+
+		allocate(oldKeys.length * 2);
+		evictionHand = 0;
+
+		for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+			if (oldKeys[oldSlot] == 0) {
+				continue;
+			}
+
+			int slot = (int) oldKeys[oldSlot] & mask;
+			while (keys[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+
+			keys[slot] = oldKeys[oldSlot];
+			words1[slot] = oldWords1[oldSlot];
+			words2[slot] = oldWords2[oldSlot];
+			sequences2[slot] = oldSequences2[oldSlot];
+			counts[slot] = oldCounts[oldSlot];
+			lastUsed[slot] = oldLastUsed[oldSlot];
+			changed[slot] = oldChanged[oldSlot];
+		}
+	}
+
+
+	/**
+	 * Halves all counts after every "maxSize" additions. This way, the new pairs can eventually
+	 * replace the ones that were frequent long ago. All counts change, so the next save rewrites
+	 * everything.
+	 */
+	private void age() {
+		if (++addsSinceAging < maxSize) {
+			return;
+		}
+
+		addsSinceAging = 0;
+		isFullSaveNeeded = true;
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (keys[slot] != 0) {
+				counts[slot] = Math.max(counts[slot] / 2, 1);
+			}
+		}
+	}
+
+
+	/**
+	 * Removes the pair with the lowest count among the next few pairs after the previous eviction.
+	 * If the counts are equal, the one used least recently is removed.
+	 */
+	private void evict() {
+		int victim = -1;
+		int slot = evictionHand;
+
+		for (int samples = 0, checked = 0; samples < EVICTION_SAMPLES && checked < keys.length; checked++, slot = (slot + 1) & mask) {
+			if (keys[slot] == 0) {
+				continue;
+			}
+
+			samples++;
+			if (
+				victim < 0
+				|| counts[slot] < counts[victim]
+				|| (counts[slot] == counts[victim] && clock - lastUsed[slot] > clock - lastUsed[victim])
+			) {
+				victim = slot;
+			}
+		}
+
+		evictionHand = slot;
+		if (victim >= 0) {
+			if (!isFullSaveNeeded) {
+				removed.add(new WordPair(language, words1[victim], words2[victim], sequences2[victim]));
+			}
+			remove(victim);
+			evictions++;
+			Metrics.count("pairs.evictions");
+		}
+	}
+
+
+	/**
+	 * Removes the pair in the given slot and moves back the following pairs from the same probe
+	 * sequence, so that no "deleted" markers are needed.
+	 */
+	private void remove(int slot) {
+		int gap = slot;
+		for (int i = (slot + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+			int home = (int) keys[i] & mask;
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				words1[gap] = words1[i];
+				words2[gap] = words2[i];
+				sequences2[gap] = sequences2[i];
+				counts[gap] = counts[i];
+				lastUsed[gap] = lastUsed[i];
+				changed[gap] = changed[i];
+				gap = i;
+			}
+		}
+
+		keys[gap] = 0;
+		words1[gap] = null;
+		words2[gap] = null;
+		sequences2[gap] = null;
+		counts[gap] = 0;
+		lastUsed[gap] = 0;
+		changed[gap] = false;
+		size--;
+	}
+
+
+	/**
+	 * Makes the next pollChanges() return all pairs, for example, when the database may contain pairs
+	 * that are not in memory, or when a save has failed.
+	 */
+	synchronized void requireFullSave() {
+		isFullSaveNeeded = true;
+	}
+
+
+	/**
+	 * Fills "changedPairs" and "removedPairs" with the changes since the previous call and forgets
+	 * them. When true is returned, "changedPairs" contains all pairs and they must replace everything
+	 * in the database.
+	 */
+	synchronized boolean pollChanges(@NonNull ArrayList<WordPair> changedPairs, @NonNull ArrayList<WordPair> removedPairs) {
+		boolean isFullSave = isFullSaveNeeded;
+
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (keys[slot] != 0 && (isFullSave || changed[slot])) {
+				changedPairs.add(new WordPair(language, words1[slot], words2[slot], sequences2[slot], counts[slot]));
+			}
+			changed[slot] = false;
+		}
+
+		if (!isFullSave) {
+			removedPairs.addAll(removed);
+		}
+
+		removed = new ArrayList<>();
+		isFullSaveNeeded = false;
+
+		return isFullSave;
+	}
+}
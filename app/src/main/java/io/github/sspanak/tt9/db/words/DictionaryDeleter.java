@@ -12,6 +12,7 @@ import java.util.concurrent.Future;
 
 import io.github.sspanak.tt9.db.BaseSyncStore;
 import io.github.sspanak.tt9.db.sqlite.DeleteOps;
+import io.github.sspanak.tt9.db.sqlite.ShadowTables;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.languages.NaturalLanguage;
 import io.github.sspanak.tt9.util.Logger;
@@ -77,7 +78,11 @@ public class DictionaryDeleter extends BaseSyncStore {
 			sqlite.beginTransaction();
 			DeleteOps.delete(sqlite.getDb(), language.getId());
 			DeleteOps.deleteWordPairs(sqlite.getDb(), language.getId());
+			ShadowTables.drop(sqlite.getDb(), language.getId());
 			sqlite.finishTransaction();
+			SequenceIndexCache.clear();
+			HotPositionsCache.clear();
+			QueryCache.clear();
 		} catch (Exception e) {
 			sqlite.failTransaction();
 			Logger.e(LOG_TAG, "Failed deleting language: " + language.getId() + ". " + e.getMessage());
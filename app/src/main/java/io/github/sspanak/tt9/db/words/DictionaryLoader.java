@@ -2,25 +2,39 @@ package io.github.sspanak.tt9.db.words;
 
 import android.content.Context;
 import android.content.res.AssetManager;
+import android.database.sqlite.SQLiteDatabase;
 import android.inputmethodservice.InputMethodService;
 import android.os.Bundle;
 import android.os.Handler;
 
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import io.github.sspanak.tt9.db.DataStore;
+import io.github.sspanak.tt9.db.entities.DictionaryDelta;
+import io.github.sspanak.tt9.db.entities.Word;
 import io.github.sspanak.tt9.db.entities.WordBatch;
 import io.github.sspanak.tt9.db.entities.WordFile;
+import io.github.sspanak.tt9.db.entities.WordPosition;
 import io.github.sspanak.tt9.db.exceptions.DictionaryImportAbortedException;
 import io.github.sspanak.tt9.db.exceptions.DictionaryImportException;
 import io.github.sspanak.tt9.db.sqlite.DeleteOps;
+import io.github.sspanak.tt9.db.sqlite.ImportDatabase;
 import io.github.sspanak.tt9.db.sqlite.InsertOps;
+import io.github.sspanak.tt9.db.sqlite.ReadOps;
 import io.github.sspanak.tt9.db.sqlite.SQLiteOpener;
-import io.github.sspanak.tt9.db.sqlite.Tables;
+import io.github.sspanak.tt9.db.sqlite.ShadowTables;
+import io.github.sspanak.tt9.db.sqlite.UpdateOps;
 import io.github.sspanak.tt9.languages.EmojiLanguage;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.languages.LanguageKind;
@@ -31,6 +45,7 @@ import io.github.sspanak.tt9.ui.notifications.DictionaryLoadingBar;
 import io.github.sspanak.tt9.ui.notifications.DictionaryUpdateNotification;
 import io.github.sspanak.tt9.util.ConsumerCompat;
 import io.github.sspanak.tt9.util.Logger;
+import io.github.sspanak.tt9.util.Metrics;
 import io.github.sspanak.tt9.util.Timer;
 
 public class DictionaryLoader {
@@ -72,7 +87,7 @@ public class DictionaryLoader {
 
 
 	public boolean load(Context context, ArrayList<Language> languages) {
-		if (isRunning()) {
+		if (isRunning() || ImportBenchmark.getInstance().isRunning()) {
 			return false;
 		}
 
@@ -94,7 +109,15 @@ public class DictionaryLoader {
 
 		sendStartMessage(languages.size());
 
-		// SQLite does not support parallel queries, so let's import them one by one
+		int threads = Math.min(languages.size(), Math.min(Runtime.getRuntime().availableProcessors(), SettingsStore.DICTIONARY_IMPORT_MAX_THREADS));
+		if (threads > 1) {
+			loadParallel(context, languages, threads);
+			Timer.stop(IMPORT_TIMER);
+			return;
+		}
+
+		// With a single language or a single core, there is nothing to parallelize, so write directly
+		// to the main database.
 		for (Language lang : languages) {
 			if (loadThread.isInterrupted()) {
 				break;
@@ -107,6 +130,43 @@ public class DictionaryLoader {
 	}
 
 
+	/**
+	 * SQLite does not support parallel writes to the same file, so each language is imported into
+	 * a separate temporary database by a worker thread. Meanwhile, the load thread copies the ready
+	 * ones into the main database in the original order, which also keeps the progress messages
+	 * in the same order as in the sequential mode.
+	 */
+	private void loadParallel(Context context, ArrayList<Language> languages, int threads) {
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<?>> importedFiles = new ArrayList<>();
+		AtomicIntegerArray fileProgress = new AtomicIntegerArray(languages.size());
+
+		for (int i = 0; i < languages.size(); i++) {
+			final int fileIndex = i;
+			final Language language = languages.get(i);
+			importedFiles.add(workers.submit(() -> {
+				importToFile(context, language, (progress) -> fileProgress.set(fileIndex, Math.round(progress * 100)));
+				return null;
+			}));
+		}
+
+		try {
+			for (int i = 0; i < languages.size(); i++) {
+				if (loadThread.isInterrupted()) {
+					break;
+				}
+				importFromFile(context, languages.get(i), importedFiles.get(i), fileProgress, i);
+				currentFile++;
+			}
+		} finally {
+			workers.shutdownNow();
+			for (Language language : languages) {
+				ImportDatabase.delete(context, language);
+			}
+		}
+	}
+
+
 	public static void load(Context context, Language language) {
 		DictionaryLoadingBar progressBar = DictionaryLoadingBar.getInstance(context);
 		getInstance(context).setOnStatusChange(progressBar::show);
@@ -115,7 +175,7 @@ public class DictionaryLoader {
 
 
 	public static boolean autoLoad(InputMethodService context, Language language) {
-		if (getInstance(context).isRunning()) {
+		if (getInstance(context).isRunning() || ImportBenchmark.getInstance().isRunning()) {
 			return false;
 		}
 
@@ -133,9 +193,13 @@ public class DictionaryLoader {
 				if (hash.isEmpty()) {
 					load(context, language);
 				}
-				// or if the database is outdated, compared to the dictionary file, ask for confirmation and load
-				else if (!hash.equals(new WordFile(context, language, self.assets).getHash())) {
-					new DictionaryUpdateNotification(context, language).show();
+				// or if the database is outdated, compared to the dictionary file, try applying only the changes,
+				// otherwise ask for confirmation and load
+				else {
+					String currentHash = new WordFile(context, language, self.assets).getHash();
+					if (!hash.equals(currentHash)) {
+						self.update(context, language, hash, currentHash);
+					}
 				}
 			},
 			language
@@ -145,8 +209,30 @@ public class DictionaryLoader {
 	}
 
 
+	/**
+	 * Applies the dictionary changes since the imported version, in the background. When there are no
+	 * changes for the imported version, or they can not be applied, asks for confirmation to import
+	 * the entire dictionary, as usual.
+	 */
+	private void update(InputMethodService context, Language language, String importedHash, String currentHash) {
+		if (isRunning() || ImportBenchmark.getInstance().isRunning()) {
+			return;
+		}
+
+		loadThread = new Thread(() -> {
+			DictionaryDelta delta = new DictionaryDelta(assets, language);
+			if (!delta.canUpdate(importedHash, currentHash) || !applyDelta(language, delta, currentHash)) {
+				asyncHandler.post(() -> new DictionaryUpdateNotification(context, language).show());
+			}
+		});
+		loadThread.start();
+	}
+
+
 	public void stop() {
-		loadThread.interrupt();
+		if (loadThread != null) {
+			loadThread.interrupt();
+		}
 		Timer.stop(IMPORT_TIMER);
 	}
 
@@ -156,6 +242,11 @@ public class DictionaryLoader {
 	}
 
 
+	/**
+	 * Imports the dictionary into the shadow tables, one batch per transaction, then replaces the
+	 * current tables with them (see: ShadowTables). Meanwhile, the current words remain available.
+	 * If a previous import of the same file was interrupted, it continues from where it stopped.
+	 */
 	private void importAll(Context context, Language language) {
 		if (language == null) {
 			Logger.e(LOG_TAG, "Failed loading a dictionary for NULL language.");
@@ -163,56 +254,291 @@ public class DictionaryLoader {
 			return;
 		}
 
+		final SQLiteDatabase db = sqlite.getDb();
+
 		try {
 			Timer.start();
 
+			final WordFile wordFile = new WordFile(context, language, assets);
+			final int positionShift;
+			final int[] savedWords = { 0 };
 			float progress = 1;
 
 			sqlite.beginTransaction();
+			ShadowTables.Progress savedProgress = ShadowTables.getProgress(db, language.getId(), wordFile.getHash());
+			if (savedProgress != null) {
+				positionShift = savedProgress.positionShift;
+				savedWords[0] = savedProgress.words;
+			} else {
+				ShadowTables.create(db, language.getId());
+				positionShift = importLetters(new InsertOps(db, language, true), language);
+				ShadowTables.saveProgress(db, language.getId(), wordFile.getHash(), positionShift, 0);
+			}
+			sqlite.finishTransaction();
 
-			Tables.dropIndexes(sqlite.getDb(), language);
 			sendProgressMessage(language, ++progress, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
-			logLoadingStep("Indexes dropped", language, Timer.restart());
+			logLoadingStep(savedWords[0] > 0 ? "Continuing from word: " + savedWords[0] : "Letters imported", language, Timer.restart());
+
+			final float minProgress = progress;
+			final InsertOps insertOps = new InsertOps(db, language, true);
+
+			int maxWordsPerSequence = readWordFile(wordFile, language, positionShift, savedWords[0], (batch) -> {
+				sqlite.beginTransaction();
+				saveWordBatch(insertOps, batch);
+				savedWords[0] += batch.size();
+				ShadowTables.saveProgress(db, language.getId(), wordFile.getHash(), positionShift, savedWords[0]);
+				sqlite.finishTransaction();
+			}, (fileProgress) -> sendProgressMessage(language, minProgress + (88 - minProgress) * fileProgress, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME));
+			progress = 88;
+			sendProgressMessage(language, progress, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
+			logLoadingStep("Dictionary file imported", language, Timer.restart());
 
-			DeleteOps.delete(sqlite.getDb(), language.getId());
-			DeleteOps.delete(sqlite.getDb(), new EmojiLanguage().getId());
+			sqlite.beginTransaction();
+			ShadowTables.createIndexes(db, language.getId());
+			sqlite.finishTransaction();
+			long[] tableSize = ShadowTables.measure(db, language.getId());
 			sendProgressMessage(language, ++progress, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
-			logLoadingStep("Storage cleared", language, Timer.restart());
+			logLoadingStep("Indexes created and tables measured", language, Timer.restart());
 
-			int lettersCount = importLetters(language);
-			sendProgressMessage(language, ++progress, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
-			logLoadingStep("Letters imported", language, Timer.restart());
+			sqlite.beginTransaction();
+			ShadowTables.swap(db, language);
+			InsertOps.replaceLanguageMeta(db, language.getId(), wordFile.getHash(), maxWordsPerSequence);
+			DeleteOps.delete(db, new EmojiLanguage().getId());
+			InsertOps.restoreCustomWords(db, new EmojiLanguage());
+			UpdateOps.updateWordCount(db, language, tableSize[0], tableSize[1]);
+			UpdateOps.updateWordCount(db, new EmojiLanguage(), 0, 0);
+			sqlite.finishTransaction();
+			sendProgressMessage(language, 100, 0);
+			logLoadingStep("Custom words restored and tables replaced", language, Timer.restart());
 
-			importWordFile(context, language, lettersCount, progress, 88);
-			progress = 88;
+			SequenceIndexCache.clear();
+			HotPositionsCache.clear();
+			QueryCache.clear();
+		} catch (Exception | Error e) {
+			// the import may be aborted between two batches, when there is no transaction
+			if (db.inTransaction()) {
+				sqlite.failTransaction();
+			}
+			onImportFailed(language, e);
+		}
+	}
+
+
+	/**
+	 * Replaces the words of each changed sequence in a single transaction. The words are written in the
+	 * existing position range of their sequence, so that the positions remain ordered by sequence, the
+	 * way the range queries and the SequenceIndex expect them. The frequencies of the words typed by
+	 * the user are kept. When a sequence is new or has grown, it does not fit anywhere, so nothing is
+	 * changed and false is returned to make the user import the entire dictionary.
+	 */
+	private boolean applyDelta(Language language, DictionaryDelta delta, String currentHash) {
+		final int langId = language.getId();
+		final SQLiteDatabase db = sqlite.getDb();
+
+		try {
+			Timer.start(LOG_TAG);
+
+			ReadOps readOps = new ReadOps();
+			InsertOps insertOps = new InsertOps(db, language);
+			int maxWordsPerSequence = 0;
+
+			sqlite.beginTransaction();
+
+			for (Map.Entry<String, ArrayList<String>> change : delta.getSequences().entrySet()) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new DictionaryImportAbortedException();
+				}
+
+				String sequence = change.getKey();
+				ArrayList<String> words = change.getValue();
+				WordPosition oldRange = readOps.getWordPosition(db, langId, sequence);
+				ArrayList<Word> oldWords = new ArrayList<>();
+
+				if (!words.isEmpty() && (oldRange == null || words.size() > oldRange.end - oldRange.start + 1)) {
+					sqlite.failTransaction();
+					Timer.stop(LOG_TAG);
+					Logger.i(LOG_TAG, "Sequence: '" + sequence + "' has grown. The dictionary for language: " + langId + " must be imported again.");
+					return false;
+				}
+
+				if (oldRange != null) {
+					oldWords = readOps.getWords(db, langId, oldRange.start, oldRange.end);
+					DeleteOps.deleteWords(db, langId, oldRange.start, oldRange.end);
+					DeleteOps.deleteWordPosition(db, langId, sequence);
+				}
+
+				if (words.isEmpty()) {
+					continue;
+				}
+
+				int start = oldRange.start;
+				for (int i = 0, size = words.size(); i < size; i++) {
+					insertOps.insertWord(words.get(i), getDeltaFrequency(oldWords, words.get(i), size - i), start + i);
+				}
+				insertOps.insertWordPosition(sequence, start, start + words.size() - 1);
+				maxWordsPerSequence = Math.max(maxWordsPerSequence, words.size());
+			}
+
+			DeleteOps.purgeCustomWordsAndPositions(db, langId);
+			UpdateOps.setDeltaUpdated(db, langId, currentHash, maxWordsPerSequence);
+
+			sqlite.finishTransaction();
+
+			// measured after the changes are saved, to keep the write lock short
+			long[] tableSize = readOps.measureTables(db, langId);
+			UpdateOps.setWordCount(db, langId, tableSize[0]);
+			UpdateOps.setTableSize(db, langId, tableSize[1]);
+			SequenceIndexCache.clear();
+			HotPositionsCache.clear();
+			QueryCache.clear();
+
+			logLoadingStep("Applied " + delta.getSequences().size() + " sequence changes", language, Timer.stop(LOG_TAG));
+			return true;
+		} catch (Exception e) {
+			sqlite.failTransaction();
+			Timer.stop(LOG_TAG);
+			Logger.e(LOG_TAG, "Failed applying the dictionary changes for language: " + langId + ". " + e.getMessage());
+			return false;
+		}
+	}
+
+
+	/**
+	 * Keeps the frequency of a word typed by the user, otherwise returns the default one for its new
+	 * rank. The untouched words have their default import frequency (see: WordBatch.add()).
+	 */
+	private static int getDeltaFrequency(ArrayList<Word> oldWords, String word, int defaultFrequency) {
+		for (int i = 0, size = oldWords.size(); i < size; i++) {
+			Word oldWord = oldWords.get(i);
+			if (oldWord.word.equals(word)) {
+				return oldWord.frequency != size - i ? oldWord.frequency : defaultFrequency;
+			}
+		}
+
+		return defaultFrequency;
+	}
+
+
+	/**
+	 * Runs on a worker thread. Imports the letters and the dictionary words in a temporary database.
+	 */
+	private void importToFile(Context context, Language language, ConsumerCompat<Float> onProgress) throws Exception {
+		SQLiteDatabase db = ImportDatabase.create(context, language);
+
+		try {
+			db.beginTransaction();
+			InsertOps insertOps = new InsertOps(db, language);
+			int lettersCount = importLetters(insertOps, language);
+			WordFile wordFile = new WordFile(context, language, assets);
+			int maxWordsPerSequence = readWordFile(wordFile, language, lettersCount, 0, (batch) -> saveWordBatch(insertOps, batch), onProgress);
+			InsertOps.replaceLanguageMeta(db, language.getId(), wordFile.getHash(), maxWordsPerSequence);
+			db.setTransactionSuccessful();
+		} finally {
+			if (db.inTransaction()) {
+				db.endTransaction();
+			}
+			ImportDatabase.close(db);
+		}
+	}
+
+
+	/**
+	 * Runs on the load thread. Waits for the temporary database of the given language, copies it to
+	 * the shadow tables of the main database and replaces the current ones, the same way as in
+	 * importAll(). Unlike there, an interrupted import starts over, because the temporary databases
+	 * are not durable.
+	 */
+	private void importFromFile(Context context, Language language, Future<?> importedFile, AtomicIntegerArray fileProgress, int fileIndex) {
+		SQLiteDatabase db = sqlite.getDb();
+		SQLiteDatabase source = null;
+
+		try {
+			Timer.start();
+
+			waitForFile(language, importedFile, fileProgress, fileIndex);
+			float progress = 88;
 			sendProgressMessage(language, progress, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
-			logLoadingStep("Dictionary file imported", language, Timer.restart());
+			logLoadingStep("Dictionary file imported in a separate database", language, Timer.restart());
+
+			source = ImportDatabase.openSource(context, language);
 
-			DeleteOps.purgeCustomWords(sqlite.getDb(), language.getId());
+			sqlite.beginTransaction();
+			ShadowTables.create(db, language.getId());
+			sqlite.finishTransaction();
+
+			ImportDatabase.copy(sqlite, source, language);
 			sendProgressMessage(language, ++progress, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
-			logLoadingStep("Removed custom words, which are already in the dictionary", language, Timer.restart());
+			logLoadingStep("Dictionary copied to the main database", language, Timer.restart());
 
-			InsertOps.restoreCustomWords(sqlite.getDb(), language);
-			InsertOps.restoreCustomWords(sqlite.getDb(), new EmojiLanguage());
+			sqlite.beginTransaction();
+			ShadowTables.createIndexes(db, language.getId());
+			sqlite.finishTransaction();
+			long[] tableSize = ShadowTables.measure(db, language.getId());
 			sendProgressMessage(language, ++progress, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
-			logLoadingStep("Custom words restored", language, Timer.restart());
+			logLoadingStep("Indexes created and tables measured", language, Timer.restart());
+
+			sqlite.beginTransaction();
+			ShadowTables.swap(db, language);
+			ImportDatabase.copyLanguageMeta(source, db, language);
+			DeleteOps.delete(db, new EmojiLanguage().getId());
+			InsertOps.restoreCustomWords(db, new EmojiLanguage());
+			UpdateOps.updateWordCount(db, language, tableSize[0], tableSize[1]);
+			UpdateOps.updateWordCount(db, new EmojiLanguage(), 0, 0);
+			sqlite.finishTransaction();
 
-			Tables.createPositionIndex(sqlite.getDb(), language);
-			sendProgressMessage(language, progress + (100f - progress) / 2f, 0);
-			Tables.createWordIndex(sqlite.getDb(), language);
 			sendProgressMessage(language, 100, 0);
-			logLoadingStep("Indexes restored", language, Timer.restart());
+			logLoadingStep("Custom words restored and tables replaced", language, Timer.restart());
 
-			sqlite.finishTransaction();
-			SlowQueryStats.clear();
-		} catch (DictionaryImportAbortedException e) {
-			sqlite.failTransaction();
-			stop();
+			SequenceIndexCache.clear();
+			HotPositionsCache.clear();
+			QueryCache.clear();
+		} catch (Exception | Error e) {
+			// the import may be aborted between two batches, when there is no transaction
+			if (db.inTransaction()) {
+				sqlite.failTransaction();
+			}
+			onImportFailed(language, e);
+		} finally {
+			if (source != null) {
+				ImportDatabase.close(source);
+			}
+			ImportDatabase.delete(context, language);
+		}
+	}
+
+
+	/**
+	 * Waits for a worker to finish importing the given language, while reporting its progress. Any
+	 * errors in the worker are rethrown as they are, so that they can be reported in the same way
+	 * as in the sequential mode.
+	 */
+	private void waitForFile(Language language, Future<?> importedFile, AtomicIntegerArray fileProgress, int fileIndex) throws Exception {
+		while (true) {
+			try {
+				importedFile.get(SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME, TimeUnit.MILLISECONDS);
+				return;
+			} catch (TimeoutException e) {
+				sendProgressMessage(language, 1 + 87 * fileProgress.get(fileIndex) / 100f, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
+			} catch (InterruptedException | CancellationException e) {
+				throw new DictionaryImportAbortedException();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+	}
+
+
+	private void onImportFailed(Language language, Throwable e) {
+		stop();
+
+		if (e instanceof DictionaryImportAbortedException) {
+			sendProgressMessage(language, 0, 0);
 			Logger.i(LOG_TAG, e.getMessage() + ". File '" + language.getDictionaryFile() + "' not imported.");
-		} catch (DictionaryImportException e) {
-			stop();
-			sqlite.failTransaction();
-			sendImportError(DictionaryImportException.class.getSimpleName(), language.getId(), e.line);
+		} else if (e instanceof DictionaryImportException) {
+			sendImportError(DictionaryImportException.class.getSimpleName(), language.getId(), ((DictionaryImportException) e).line);
 
 			Logger.e(
 				LOG_TAG,
@@ -220,9 +546,7 @@ public class DictionaryLoader {
 				+ " of language '" + language.getName() + "'. "
 				+ e.getMessage()
 			);
-		} catch (Exception | Error e) {
-			stop();
-			sqlite.failTransaction();
+		} else {
 			sendError(e.getClass().getSimpleName(), language.getId());
 
 			Logger.e(
@@ -235,7 +559,7 @@ public class DictionaryLoader {
 	}
 
 
-	private int importLetters(Language language) throws InvalidLanguageCharactersException {
+	static int importLetters(InsertOps insertOps, Language language) throws InvalidLanguageCharactersException {
 		if (language.isSyllabary()) {
 			return 0;
 		}
@@ -252,60 +576,57 @@ public class DictionaryLoader {
 			}
 		}
 
-		saveWordBatch(letters);
+		saveWordBatch(insertOps, letters);
 
 		return lettersCount;
 	}
 
 
-	private void importWordFile(Context context, Language language, int positionShift, float minProgress, float maxProgress) throws Exception {
-		WordFile wordFile = new WordFile(context, language, assets);
-		WordBatch batch = new WordBatch(language, SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE + 1);
-		float progressRatio = (maxProgress - minProgress) / wordFile.getWords();
-		int wordCount = 0;
-		int maxWordsPerSequence = 0;
+	/**
+	 * Reads the dictionary file, starting after the given number of words, and passes the words to
+	 * "saveBatch" in batches. Returns the maximum number of words per sequence in the entire file.
+	 */
+	static int readWordFile(WordFile wordFile, Language language, int positionShift, int skipWords, ConsumerCompat<WordBatch> saveBatch, ConsumerCompat<Float> onProgress) throws Exception {
+		WordBatchReader reader = new WordBatchReader(wordFile, language, positionShift, skipWords);
+		float totalWords = wordFile.getWords();
+		int wordCount = skipWords;
 
-		try (BufferedReader ignored = wordFile.getReader()) {
-			while (wordFile.notEOF()) {
-				if (loadThread.isInterrupted()) {
-					sendProgressMessage(language, 0, 0);
-					throw new DictionaryImportAbortedException();
-				}
+		reader.start();
 
-				try {
-					String digitSequence = wordFile.getNextSequence();
-					ArrayList<String> words = wordFile.getNextWords(digitSequence);
-					batch.add(words, digitSequence, wordCount + positionShift);
-					wordCount += words.size();
-					maxWordsPerSequence = Math.max(maxWordsPerSequence, words.size());
-
-					if (batch.getWords().size() > SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE) {
-						saveWordBatch(batch);
-						batch.clear();
-					}
-				} catch (IOException e) {
-					throw new DictionaryImportException(e.getMessage(), wordCount);
+		try {
+			for (WordBatch batch; (batch = reader.take()) != null; ) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new DictionaryImportAbortedException();
 				}
 
-				sendProgressMessage(language, minProgress + progressRatio * wordCount, SettingsStore.DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME);
+				saveBatch.accept(batch);
+				wordCount += batch.size();
+				onProgress.accept(wordCount / totalWords);
+				reader.recycle(batch);
 			}
+		} catch (InterruptedException e) {
+			throw new DictionaryImportAbortedException();
+		} finally {
+			reader.stop();
 		}
 
-		saveWordBatch(batch);
-		InsertOps.replaceLanguageMeta(sqlite.getDb(), language.getId(), wordFile.getHash(), maxWordsPerSequence);
+		return reader.getMaxWordsPerSequence();
 	}
 
 
-	private void saveWordBatch(WordBatch batch) {
-		InsertOps insertOps = new InsertOps(sqlite.getDb(), batch.getLanguage());
+	static void saveWordBatch(InsertOps insertOps, WordBatch batch) {
+		long start = Metrics.now();
 
-		for (int i = 0, end = batch.getWords().size(); i < end; i++) {
-			insertOps.insertWord(batch.getWords().get(i));
+		for (int i = 0, end = batch.size(); i < end; i++) {
+			insertOps.insertWord(batch.getWord(i), batch.getFrequency(i), batch.getPosition(i));
 		}
 
-		for (int i = 0, end = batch.getPositions().size(); i < end; i++) {
-			insertOps.insertWordPosition(batch.getPositions().get(i));
+		for (int i = 0, end = batch.getSequenceCount(); i < end; i++) {
+			insertOps.insertWordPosition(batch.getSequence(i), batch.getStart(i), batch.getEnd(i));
 		}
+
+		Metrics.recordSince("import.batch", start);
+		Metrics.count("import.words", batch.size());
 	}
 
 
@@ -0,0 +1,328 @@
+package io.github.sspanak.tt9.db.words;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+import io.github.sspanak.tt9.util.Logger;
+import io.github.sspanak.tt9.util.Timer;
+
+/**
+ * Remembers the dictionary word positions of the most frequently typed short sequences and saves
+ * them to a small binary file per language. The IME process is killed often, and without this cache,
+ * the first key presses after every restart would have to wait for the slow database queries, until
+ * the SequenceIndex is ready.
+ *
+ * The files are loaded lazily, on the first query for each language, and only if they were saved
+ * for the currently imported dictionary (same "fileHash" in "languages_meta"). Only the dictionary
+ * positions are kept here. The custom word positions change often, so they are always queried.
+ *
+ * The positions may be read from the old tables, while an import replaces them. To avoid keeping
+ * them, the callers take the revision before reading from the database and the changes with an
+ * older revision than the current one are ignored (see: clear()).
+ */
+public class HotPositionsCache {
+	private static final String LOG_TAG = HotPositionsCache.class.getSimpleName();
+	private static final String FILE_PREFIX = "hot_positions_";
+	private static final int MAGIC = 0x54543950; // "TT9P"
+	private static final int VERSION = 1;
+
+	private static final HashMap<Integer, LanguageCache> languages = new HashMap<>();
+	@Nullable private static File directory;
+	private static int revision = 0;
+
+
+	private static class Entry {
+		@NonNull private final String positions;
+		private int uses;
+
+		private Entry(@NonNull String positions, int uses) {
+			this.positions = positions;
+			this.uses = uses;
+		}
+	}
+
+
+	private static class LanguageCache {
+		@NonNull private final String fileHash;
+		private int maxWordsPerSequence;
+		private boolean isModified = false;
+		private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > SettingsStore.HOT_POSITIONS_CACHE_SIZE;
+			}
+		};
+
+		private LanguageCache(@NonNull String fileHash, int maxWordsPerSequence) {
+			this.fileHash = fileHash;
+			this.maxWordsPerSequence = maxWordsPerSequence;
+		}
+	}
+
+
+	public static void init(@NonNull Context context) {
+		directory = directory == null ? context.getFilesDir() : directory;
+	}
+
+
+	@NonNull
+	private static String generateKey(@NonNull String sequence, int generations, int minPositions) {
+		return sequence + "_" + generations + "_" + minPositions;
+	}
+
+
+	public static boolean isCacheable(@NonNull String sequence) {
+		return sequence.length() <= SettingsStore.HOT_POSITIONS_MAX_SEQUENCE_LENGTH;
+	}
+
+
+	public static synchronized int getRevision() {
+		return revision;
+	}
+
+
+	public static synchronized boolean isLoaded(@NonNull Language language) {
+		return languages.containsKey(language.getId());
+	}
+
+
+	/**
+	 * Loads the saved positions of the given language, if the file matches the currently imported
+	 * dictionary. Otherwise, starts with an empty cache.
+	 */
+	public static synchronized void load(int readRevision, @NonNull Language language, @NonNull String fileHash) {
+		if (readRevision != revision || languages.containsKey(language.getId())) {
+			return;
+		}
+
+		Timer.start(LOG_TAG);
+		LanguageCache cache = read(language, fileHash);
+		languages.put(language.getId(), cache != null ? cache : new LanguageCache(fileHash, 0));
+
+		if (cache != null) {
+			Logger.d(LOG_TAG, "Loaded " + cache.entries.size() + " hot sequences for language: " + language.getId() + " in: " + Timer.stop(LOG_TAG) + " ms");
+		} else {
+			Timer.stop(LOG_TAG);
+		}
+	}
+
+
+	@Nullable
+	public static synchronized String get(@NonNull Language language, @NonNull String sequence, int generations, int minPositions) {
+		LanguageCache cache = languages.get(language.getId());
+		Entry entry = cache != null ? cache.entries.get(generateKey(sequence, generations, minPositions)) : null;
+		if (entry == null) {
+			return null;
+		}
+
+		entry.uses++;
+		cache.isModified = true;
+		return entry.positions;
+	}
+
+
+	public static synchronized void put(int readRevision, @NonNull Language language, @NonNull String sequence, int generations, int minPositions, @NonNull String positions) {
+		LanguageCache cache = languages.get(language.getId());
+		if (readRevision == revision && cache != null && isCacheable(sequence)) {
+			cache.entries.put(generateKey(sequence, generations, minPositions), new Entry(positions, 1));
+			cache.isModified = true;
+		}
+	}
+
+
+	/**
+	 * Returns the saved "maxWordsPerSequence" of the language, or 0 when it is unknown.
+	 */
+	public static synchronized int getMaxWordsPerSequence(@NonNull Language language) {
+		LanguageCache cache = languages.get(language.getId());
+		return cache != null ? cache.maxWordsPerSequence : 0;
+	}
+
+
+	public static synchronized void setMaxWordsPerSequence(int readRevision, @NonNull Language language, int maxWords) {
+		LanguageCache cache = languages.get(language.getId());
+		if (readRevision == revision && cache != null && cache.maxWordsPerSequence != maxWords) {
+			cache.maxWordsPerSequence = maxWords;
+			cache.isModified = true;
+		}
+	}
+
+
+	/**
+	 * Saves the most frequently used sequences of all modified languages. Must be called on
+	 * a background thread.
+	 */
+	public static void save() {
+		ArrayList<Integer> langIds;
+		synchronized (HotPositionsCache.class) {
+			langIds = new ArrayList<>(languages.keySet());
+		}
+
+		for (int langId : langIds) {
+			Timer.start(LOG_TAG);
+			int saved = write(langId);
+			if (saved >= 0) {
+				Logger.d(LOG_TAG, "Saved " + saved + " hot sequences for language: " + langId + " in: " + Timer.stop(LOG_TAG) + " ms");
+			} else {
+				Timer.stop(LOG_TAG);
+			}
+		}
+	}
+
+
+	/**
+	 * Forgets all positions and deletes the files. Must be called every time the dictionary words
+	 * of any language change. The reads that have started before this, are ignored by put() and the
+	 * files being written at the moment are discarded.
+	 */
+	public static synchronized void clear() {
+		revision++;
+		languages.clear();
+
+		File[] files = directory != null ? directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX)) : null;
+		for (int i = 0; files != null && i < files.length; i++) {
+			if (!files[i].delete()) {
+				Logger.w(LOG_TAG, "Could not delete: " + files[i].getName());
+			}
+		}
+	}
+
+
+	@NonNull
+	public static synchronized String getSummary() {
+		int sequences = 0;
+		for (LanguageCache cache : languages.values()) {
+			sequences += cache.entries.size();
+		}
+
+		return "Hot sequences: " + sequences + " (languages: " + languages.size() + ")";
+	}
+
+
+	@Nullable
+	private static File getFile(int langId) {
+		return directory != null ? new File(directory, FILE_PREFIX + langId + ".bin") : null;
+	}
+
+
+	@Nullable
+	private static LanguageCache read(@NonNull Language language, @NonNull String fileHash) {
+		File file = getFile(language.getId());
+		if (fileHash.isEmpty() || file == null || !file.exists()) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				Logger.w(LOG_TAG, "Unrecognized file format: " + file.getName());
+				return null;
+			}
+
+			if (!fileHash.equals(in.readUTF())) {
+				Logger.d(LOG_TAG, "Hot sequences of language: " + language.getId() + " were saved for another dictionary version. Ignoring them.");
+				return null;
+			}
+
+			LanguageCache cache = new LanguageCache(fileHash, in.readInt());
+			for (int i = 0, count = in.readInt(); i < count; i++) {
+				String key = in.readUTF();
+				int uses = in.readInt();
+				byte[] positions = new byte[in.readInt()];
+				in.readFully(positions);
+				cache.entries.put(key, new Entry(new String(positions, StandardCharsets.US_ASCII), uses));
+			}
+
+			return cache;
+		} catch (IOException | RuntimeException e) {
+			Logger.w(LOG_TAG, "Could not read: " + file.getName() + ". " + e.getMessage());
+			return null;
+		}
+	}
+
+
+	/**
+	 * Writes the language cache to a file, if it has changed since the last time. Only the most
+	 * used sequences are saved, to keep the file small and quick to load. Returns the number of
+	 * saved sequences, or -1 when nothing was written.
+	 */
+	private static int write(int langId) {
+		String fileHash;
+		int maxWordsPerSequence;
+		int writeRevision;
+		ArrayList<Map.Entry<String, Entry>> entries;
+
+		synchronized (HotPositionsCache.class) {
+			LanguageCache cache = languages.get(langId);
+			if (cache == null || !cache.isModified || cache.fileHash.isEmpty()) {
+				return -1;
+			}
+
+			fileHash = cache.fileHash;
+			maxWordsPerSequence = cache.maxWordsPerSequence;
+			entries = new ArrayList<>(cache.entries.entrySet());
+			cache.isModified = false;
+			writeRevision = revision;
+		}
+
+		entries.sort((a, b) -> Integer.compare(b.getValue().uses, a.getValue().uses));
+		int count = Math.min(entries.size(), SettingsStore.HOT_POSITIONS_SAVE_SIZE);
+
+		File file = getFile(langId);
+		File tempFile = file != null ? new File(file.getPath() + ".tmp") : null;
+		if (tempFile == null) {
+			return -1;
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(fileHash);
+			out.writeInt(maxWordsPerSequence);
+			out.writeInt(count);
+			for (int i = 0; i < count; i++) {
+				byte[] positions = entries.get(i).getValue().positions.getBytes(StandardCharsets.US_ASCII);
+				out.writeUTF(entries.get(i).getKey());
+				out.writeInt(entries.get(i).getValue().uses);
+				out.writeInt(positions.length);
+				out.write(positions);
+			}
+		} catch (IOException e) {
+			Logger.w(LOG_TAG, "Could not write: " + tempFile.getName() + ". " + e.getMessage());
+			return -1;
+		}
+
+		// replace the old file only when the new one is complete, in case we get killed meanwhile
+		synchronized (HotPositionsCache.class) {
+			if (writeRevision != revision) {
+				Logger.d(LOG_TAG, "Discarding the outdated hot sequences of language: " + langId);
+				tempFile.delete();
+				return -1;
+			}
+
+			if (!tempFile.renameTo(file)) {
+				Logger.w(LOG_TAG, "Could not replace: " + file.getName());
+				return -1;
+			}
+		}
+
+		return count;
+	}
+}
@@ -0,0 +1,268 @@
+package io.github.sspanak.tt9.db.words;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import io.github.sspanak.tt9.db.entities.WordBatch;
+import io.github.sspanak.tt9.db.entities.WordFile;
+import io.github.sspanak.tt9.db.exceptions.DictionaryImportAbortedException;
+import io.github.sspanak.tt9.db.sqlite.ImportDatabase;
+import io.github.sspanak.tt9.db.sqlite.InsertOps;
+import io.github.sspanak.tt9.hacks.DeviceInfo;
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+import io.github.sspanak.tt9.util.ConsumerCompat;
+import io.github.sspanak.tt9.util.Logger;
+
+/**
+ * Measures the import speed of each bundled dictionary, so that the changes in the import code can
+ * be compared using numbers. Each stage reads the entire file again and adds one more step:
+ *   1. parsing the file (see: WordFile.next())
+ *   2. + filling the word batches
+ *   3. + generating the digit sequence of each word
+ *   4. importing into a temporary database, the same way as the parallel import
+ * For each stage, it reports the words per second, the allocated bytes per word and the peak heap
+ * usage. The temporary database is deleted at the end, so the current words are not affected.
+ * The benchmark and the DictionaryLoader never run at the same time, so they do not skew each
+ * other's numbers.
+ */
+public class ImportBenchmark {
+	private static final String LOG_TAG = ImportBenchmark.class.getSimpleName();
+	private static ImportBenchmark self;
+
+	private Thread thread;
+	@NonNull private String results = "";
+
+	private long stageStartTime;
+	private long stageStartAllocations;
+	private long stagePeakHeap;
+
+
+	public static ImportBenchmark getInstance() {
+		if (self == null) {
+			self = new ImportBenchmark();
+		}
+
+		return self;
+	}
+
+
+	public boolean isRunning() {
+		return thread != null && thread.isAlive();
+	}
+
+
+	@NonNull
+	public String getResults() {
+		return results;
+	}
+
+
+	/**
+	 * Runs all stages for the given languages on a separate thread. "onProgress" receives the name of
+	 * the current language and "onFinish" receives the results, both on the benchmark thread.
+	 */
+	public boolean start(@NonNull Context context, @NonNull ArrayList<Language> languages, @NonNull ConsumerCompat<String> onProgress, @NonNull ConsumerCompat<String> onFinish) {
+		if (isRunning() || DictionaryLoader.getInstance(context).isRunning()) {
+			return false;
+		}
+
+		thread = new Thread(() -> {
+			results = run(context, languages, onProgress);
+			onFinish.accept(results);
+		}, LOG_TAG);
+		thread.start();
+
+		return true;
+	}
+
+
+	public void stop() {
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+
+	@NonNull
+	private String run(@NonNull Context context, @NonNull ArrayList<Language> languages, @NonNull ConsumerCompat<String> onProgress) {
+		AssetManager assets = context.getAssets();
+		StringBuilder report = new StringBuilder();
+
+		for (Language language : languages) {
+			if (Thread.currentThread().isInterrupted()) {
+				report.append("Aborted.");
+				break;
+			}
+
+			WordFile wordFile = new WordFile(context, language, assets);
+			if (!wordFile.exists()) {
+				continue;
+			}
+
+			onProgress.accept(language.getName());
+			String languageReport = benchmark(context, language, assets, wordFile.getWords());
+			Logger.i(LOG_TAG, languageReport);
+			report.append(languageReport).append("\n\n");
+		}
+
+		return report.length() > 0 ? report.toString().trim() : "No dictionaries.";
+	}
+
+
+	@NonNull
+	private String benchmark(@NonNull Context context, @NonNull Language language, @NonNull AssetManager assets, int words) {
+		StringBuilder report = new StringBuilder(language.getName()).append(" (").append(words).append(" words)");
+
+		try {
+			startStage();
+			parse(new WordFile(context, language, assets));
+			report.append("\nParse: ").append(stopStage(words));
+
+			startStage();
+			batch(new WordFile(context, language, assets), language, false);
+			report.append("\n+ batches: ").append(stopStage(words));
+
+			startStage();
+			batch(new WordFile(context, language, assets), language, true);
+			report.append("\n+ sequences: ").append(stopStage(words));
+
+			startStage();
+			importToFile(context, language, new WordFile(context, language, assets));
+			report.append("\nImport: ").append(stopStage(words));
+		} catch (Exception | Error e) {
+			report.append("\nFailed: ").append(e.getClass().getSimpleName()).append(" ").append(e.getMessage());
+		} finally {
+			ImportDatabase.delete(context, language, true);
+		}
+
+		return report.toString();
+	}
+
+
+	private void parse(@NonNull WordFile wordFile) throws Exception {
+		try (BufferedReader ignored = wordFile.getReader()) {
+			for (int records = 0; wordFile.next(); records++) {
+				if (records % SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE == 0) {
+					sampleHeap();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Fills a single batch and clears it when full, like WordBatchReader, but without a writer.
+	 */
+	private void batch(@NonNull WordFile wordFile, @NonNull Language language, boolean withSequences) throws Exception {
+		WordBatch batch = new WordBatch(language, SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE + 1);
+		int position = 1;
+
+		try (BufferedReader ignored = wordFile.getReader()) {
+			while (wordFile.next()) {
+				batch.add(wordFile.getBuffer(), wordFile.getSequenceStart(), wordFile.getSequenceEnd(), wordFile.getWordStarts(), wordFile.getWordEnds(), wordFile.getWordCount(), position);
+				position += wordFile.getWordCount();
+
+				if (batch.size() > SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE) {
+					onBatchFull(batch, language, withSequences);
+				}
+			}
+		}
+
+		onBatchFull(batch, language, withSequences);
+	}
+
+
+	private void onBatchFull(@NonNull WordBatch batch, @NonNull Language language, boolean withSequences) throws Exception {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new DictionaryImportAbortedException();
+		}
+
+		if (withSequences) {
+			for (int i = 0, end = batch.size(); i < end; i++) {
+				language.getDigitSequenceForWord(batch.getWord(i));
+			}
+		}
+
+		sampleHeap();
+		batch.clear();
+	}
+
+
+	private void importToFile(@NonNull Context context, @NonNull Language language, @NonNull WordFile wordFile) throws Exception {
+		SQLiteDatabase db = ImportDatabase.create(context, language, true);
+
+		try {
+			db.beginTransaction();
+			InsertOps insertOps = new InsertOps(db, language);
+			int lettersCount = DictionaryLoader.importLetters(insertOps, language);
+			DictionaryLoader.readWordFile(wordFile, language, lettersCount, 0, (batch) -> {
+				DictionaryLoader.saveWordBatch(insertOps, batch);
+				sampleHeap();
+			}, (progress) -> {});
+			db.setTransactionSuccessful();
+		} finally {
+			if (db.inTransaction()) {
+				db.endTransaction();
+			}
+			ImportDatabase.close(db);
+		}
+	}
+
+
+	private void startStage() {
+		Runtime.getRuntime().gc();
+		stagePeakHeap = 0;
+		sampleHeap();
+		stageStartAllocations = getAllocatedBytes();
+		stageStartTime = System.nanoTime();
+	}
+
+
+	@NonNull
+	private String stopStage(int words) {
+		long time = System.nanoTime() - stageStartTime;
+		long allocations = getAllocatedBytes() - stageStartAllocations;
+		sampleHeap();
+
+		return String.format(
+			Locale.ROOT,
+			"%d ms, %d words/s, %s B/word, peak heap: %.1f Mb",
+			time / 1000000,
+			time > 0 ? Math.round(words * 1e9 / time) : 0,
+			stageStartAllocations < 0 || words == 0 ? "n/a" : String.valueOf(allocations / words),
+			stagePeakHeap / 1048576.0
+		);
+	}
+
+
+	private void sampleHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		stagePeakHeap = Math.max(stagePeakHeap, runtime.totalMemory() - runtime.freeMemory());
+	}
+
+
+	/**
+	 * The total bytes allocated by the entire app, or -1 on Android 5, where the statistic is not
+	 * available. The other threads are mostly idle during the benchmark, so it is close enough.
+	 */
+	private static long getAllocatedBytes() {
+		if (!DeviceInfo.AT_LEAST_ANDROID_6) {
+			return -1;
+		}
+
+		try {
+			return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package io.github.sspanak.tt9.db.words;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.sspanak.tt9.db.sqlite.ReadOps;
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.languages.exceptions.InvalidLanguageCharactersException;
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+import io.github.sspanak.tt9.util.Logger;
+
+/**
+ * A thread-safe LRU cache of the final suggestion lists returned by WordStore.getMany(). The cache
+ * is limited both by the number of entries and by their approximate size in memory.
+ *
+ * Apart from repeating queries (for example, when pressing Backspace), the cache can also answer
+ * the query for a sequence with one more digit. The words for "435575" are the ones for "43557",
+ * in the range the database would search for "435575". This is only possible when the previous
+ * query found all words in a range that includes the new one: it was not cut by the positions or
+ * the word limits, there were no custom words, and both sequences search the entire range up to
+ * "...9" (see: ReadOps.getGenerations()). A sequence ending with "9" or "0" is outside the previous
+ * range, so it is always queried. Since the words are already sorted, the order of the remaining
+ * ones is the same as in the database.
+ *
+ * The cache must be cleared every time the words or their frequencies change. The queries running
+ * meanwhile may have read the old words, so put() discards their results (see: getRevision()).
+ */
+public class QueryCache {
+	private static final String LOG_TAG = QueryCache.class.getSimpleName();
+	private static final int ENTRY_OVERHEAD_BYTES = 96;
+	private static final int WORD_OVERHEAD_BYTES = 48;
+
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private static long bytes = 0;
+	private static int revision = 0;
+
+	private static long hits = 0;
+	private static long extensions = 0;
+	private static long misses = 0;
+	private static long evictions = 0;
+	private static long savedTime = 0;
+
+
+	private static class Entry {
+		@NonNull private final ArrayList<String> words;
+		@Nullable private ArrayList<String> sequences;
+		private final boolean isComplete;
+		private final long queryTime;
+		private final int bytes;
+
+		private Entry(@NonNull String key, @NonNull ArrayList<String> words, boolean isComplete, long queryTime) {
+			this.words = words;
+			this.isComplete = isComplete;
+			this.queryTime = queryTime;
+
+			int size = ENTRY_OVERHEAD_BYTES + key.length() * 2;
+			for (String word : words) {
+				size += WORD_OVERHEAD_BYTES + word.length() * 2;
+			}
+			this.bytes = size;
+		}
+	}
+
+
+	@NonNull
+	private static String generateKey(@NonNull Language language, @NonNull String sequence, @NonNull String filter, int minWords, int maxWords) {
+		return language.getId() + "_" + sequence + "_" + filter + "_" + minWords + "_" + maxWords;
+	}
+
+
+	/**
+	 * Returns a copy of the cached words for the given query, or the filtered words of the query for
+	 * the parent sequence. Returns null, when the database must be queried.
+	 */
+	@Nullable
+	public static synchronized ArrayList<String> get(@NonNull Language language, @NonNull String sequence, @NonNull String filter, int minWords, int maxWords) {
+		final String key = generateKey(language, sequence, filter, minWords, maxWords);
+
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			hits++;
+			savedTime += entry.queryTime;
+			return new ArrayList<>(entry.words);
+		}
+
+		Entry parent = getParent(language, sequence, filter, minWords, maxWords);
+		ArrayList<String> words = parent != null ? filterParent(parent, sequence, minWords) : null;
+		if (words == null) {
+			misses++;
+			return null;
+		}
+
+		extensions++;
+		savedTime += parent.queryTime;
+		add(key, new Entry(key, words, true, parent.queryTime));
+		Logger.d(LOG_TAG, "Extended the cached words for sequence: " + sequence.substring(0, sequence.length() - 1) + " to: " + sequence);
+
+		return new ArrayList<>(words);
+	}
+
+
+	/**
+	 * Returns the current revision of the cache. It must be taken before querying the database, and
+	 * passed to put() with the results.
+	 */
+	public static synchronized int getRevision() {
+		return revision;
+	}
+
+
+	/**
+	 * "isComplete" must be true only when the words are all words in the searched range (see:
+	 * ReadOps.arePositionsComplete()), so that they can be filtered for a longer sequence. If the
+	 * cache was cleared after "queryRevision" was taken, the words may be outdated and are ignored.
+	 */
+	public static synchronized void put(int queryRevision, @NonNull Language language, @NonNull String sequence, @NonNull String filter, int minWords, int maxWords, @NonNull ArrayList<String> words, boolean isComplete, long queryTime) {
+		if (queryRevision != revision) {
+			Logger.d(LOG_TAG, "Discarding outdated words for sequence: " + sequence);
+			return;
+		}
+
+		final String key = generateKey(language, sequence, filter, minWords, maxWords);
+		add(key, new Entry(key, new ArrayList<>(words), isComplete, queryTime));
+	}
+
+
+	private static void add(@NonNull String key, @NonNull Entry entry) {
+		Entry previous = entries.put(key, entry);
+		bytes += entry.bytes - (previous != null ? previous.bytes : 0);
+
+		Iterator<Entry> eldest = entries.values().iterator();
+		while (eldest.hasNext() && (entries.size() > SettingsStore.QUERY_CACHE_MAX_ENTRIES || bytes > SettingsStore.QUERY_CACHE_MAX_BYTES)) {
+			bytes -= eldest.next().bytes;
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+
+	@Nullable
+	private static Entry getParent(@NonNull Language language, @NonNull String sequence, @NonNull String filter, int minWords, int maxWords) {
+		if (sequence.length() < 2 || !filter.isEmpty() || language.isSyllabary()) {
+			return null;
+		}
+
+		final String parentSequence = sequence.substring(0, sequence.length() - 1);
+		final char lastDigit = sequence.charAt(sequence.length() - 1);
+		if (lastDigit < '1' || lastDigit > '8' || ReadOps.getGenerations(parentSequence, filter) < 10 || ReadOps.getGenerations(sequence, filter) < 10) {
+			return null;
+		}
+
+		Entry parent = entries.get(generateKey(language, parentSequence, filter, minWords, maxWords));
+		return parent != null && parent.isComplete && setSequences(language, parent) ? parent : null;
+	}
+
+
+	/**
+	 * Selects the words the database would return: the ones between "sequence1" and "sequence9",
+	 * or between "sequence1" and "sequence999999", when there are too few of them (see:
+	 * ReadOps.getFactoryWordPositions()).
+	 */
+	@Nullable
+	private static ArrayList<String> filterParent(@NonNull Entry parent, @NonNull String sequence, int minWords) {
+		if (parent.sequences == null) {
+			return null;
+		}
+
+		ArrayList<String> words = filterRange(parent, sequence, sequence + "9");
+		return words.size() < minWords ? filterRange(parent, sequence, sequence + "999999") : words;
+	}
+
+
+	@NonNull
+	private static ArrayList<String> filterRange(@NonNull Entry parent, @NonNull String sequence, @NonNull String rangeEnd) {
+		final String rangeStart = sequence + "1";
+
+		ArrayList<String> words = new ArrayList<>();
+		for (int i = 0; i < parent.words.size(); i++) {
+			String wordSequence = parent.sequences.get(i);
+			if (wordSequence.equals(sequence) || (wordSequence.compareTo(rangeStart) >= 0 && wordSequence.compareTo(rangeEnd) <= 0)) {
+				words.add(parent.words.get(i));
+			}
+		}
+
+		return words;
+	}
+
+
+	/**
+	 * Generates the digit sequences of the parent words, only when they are needed for the first
+	 * time. Returns false, if any of the words does not belong to the language.
+	 */
+	private static boolean setSequences(@NonNull Language language, @NonNull Entry entry) {
+		if (entry.sequences != null) {
+			return true;
+		}
+
+		ArrayList<String> sequences = new ArrayList<>(entry.words.size());
+		try {
+			for (String word : entry.words) {
+				sequences.add(language.getDigitSequenceForWord(word));
+			}
+		} catch (InvalidLanguageCharactersException e) {
+			return false;
+		}
+
+		entry.sequences = sequences;
+		return true;
+	}
+
+
+	public static synchronized void clear() {
+		revision++;
+		entries.clear();
+		bytes = 0;
+	}
+
+
+	public static synchronized void resetStats() {
+		hits = extensions = misses = evictions = savedTime = 0;
+	}
+
+
+	@NonNull
+	public static synchronized String getSummary() {
+		return
+			"Cached queries: " + entries.size() + " (" + bytes / 1024 + " kB)" +
+			"\nHits: " + hits + ". Extended: " + extensions + ". Misses: " + misses + ". Evicted: " + evictions +
+			"\nTime saved: " + savedTime + " ms";
+	}
+}
@@ -0,0 +1,110 @@
+package io.github.sspanak.tt9.db.words;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.sspanak.tt9.db.entities.SequenceIndex;
+import io.github.sspanak.tt9.db.entities.SequenceIndexFile;
+import io.github.sspanak.tt9.db.sqlite.ReadOps;
+import io.github.sspanak.tt9.db.sqlite.SQLiteOpener;
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.util.Logger;
+import io.github.sspanak.tt9.util.Timer;
+
+/**
+ * Keeps one SequenceIndex per language. The indexes are loaded in the background on first use,
+ * either by memory-mapping the precompiled index file from the APK, or when there is no matching
+ * file, by reading the "word_positions" table. Until an index is ready, get() returns null and
+ * the callers must fall back to querying the database. The background loading uses its own reader,
+ * because the callers return theirs as soon as their query is done.
+ */
+public class SequenceIndexCache {
+	private static final String LOG_TAG = SequenceIndexCache.class.getSimpleName();
+
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private static final ConcurrentHashMap<Integer, SequenceIndex> indexes = new ConcurrentHashMap<>();
+	private static final Set<Integer> pendingLanguages = ConcurrentHashMap.newKeySet();
+	private static final AtomicInteger revision = new AtomicInteger(0);
+	@Nullable private static AssetManager assets;
+	@Nullable private static SQLiteOpener sqlite;
+
+
+	public static void init(@NonNull Context context) {
+		assets = assets == null ? context.getAssets() : assets;
+		sqlite = sqlite == null ? SQLiteOpener.getInstance(context) : sqlite;
+	}
+
+
+	@Nullable
+	public static SequenceIndex get(@NonNull Language language) {
+		SequenceIndex index = indexes.get(language.getId());
+		if (index == null && sqlite != null && pendingLanguages.add(language.getId())) {
+			final int currentRevision = revision.get();
+			executor.submit(() -> build(sqlite, language, currentRevision));
+		}
+
+		return index;
+	}
+
+
+	private static void build(@NonNull SQLiteOpener sqlite, @NonNull Language language, int buildRevision) {
+		final String timerName = LOG_TAG + language.getId();
+		SQLiteDatabase db = sqlite.acquireReader();
+
+		try {
+			Timer.start(timerName);
+			ReadOps readOps = new ReadOps();
+			SequenceIndex index = assets != null ? new SequenceIndexFile(assets, language).map(readOps.getIndexFileHash(db, language.getId())) : null;
+			index = index != null ? index : readOps.getSequenceIndex(db, language);
+
+			// the dictionary has changed while we were building, this index is outdated
+			if (buildRevision != revision.get()) {
+				Logger.d(LOG_TAG, "Discarding outdated index for language: " + language.getId());
+				return;
+			}
+
+			indexes.put(language.getId(), index);
+			Logger.d(LOG_TAG, "Index for language: " + language.getId() + " " + (index.isMapped() ? "mapped" : "built") + " in: " + Timer.stop(timerName) + " ms. Sequences: " + index.size() + ", memory: " + index.getMemorySize() / 1024 + " kB");
+		} catch (Exception e) {
+			Logger.e(LOG_TAG, "Failed building index for language: " + language.getId() + ". " + e.getMessage());
+		} finally {
+			sqlite.releaseReader(db);
+			pendingLanguages.remove(language.getId());
+		}
+	}
+
+
+	/**
+	 * Must be called every time the word positions of any language change, so that the indexes
+	 * are rebuilt from the new data.
+	 */
+	public static void clear() {
+		revision.incrementAndGet();
+		indexes.clear();
+	}
+
+
+	@NonNull
+	public static String getSummary() {
+		long memory = 0;
+		long sequences = 0;
+		int mapped = 0;
+		for (SequenceIndex index : indexes.values()) {
+			memory += index.getMemorySize();
+			sequences += index.size();
+			mapped += index.isMapped() ? 1 : 0;
+		}
+
+		return "Indexed languages: " + indexes.size() + " (mapped: " + mapped + "). Sequences: " + sequences + ". Memory: " + memory / 1024 + " kB";
+	}
+}
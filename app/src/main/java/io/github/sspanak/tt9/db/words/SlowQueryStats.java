@@ -1,27 +1,54 @@
 package io.github.sspanak.tt9.db.words;
 
-import java.util.HashMap;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.sspanak.tt9.db.sqlite.QueryProfiler;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
-import io.github.sspanak.tt9.util.Logger;
 import io.github.sspanak.tt9.util.TextTools;
 
+/**
+ * Database query time statistics. Only the most recent slow queries are kept. The results are
+ * cached in QueryCache. At the Debug log level, the SQL and the query plans of the slow queries
+ * are kept too (see: QueryProfiler). The query plans are added later, in the background, so the
+ * profiles wait in a separate list until then (see: WordStore.explainNextSlowQuery()).
+ */
 public class SlowQueryStats {
-	private static final String LOG_TAG = SlowQueryStats.class.getSimpleName();
 	private static long firstQueryTime = -1;
 	private static long maxQueryTime = 0;
 	private static long totalQueries = 0;
 	private static long totalQueryTime = 0;
-	private static final HashMap<String, Integer> slowQueries = new HashMap<>();
-	private static final HashMap<String, String> resultCache = new HashMap<>();
+	private static final LinkedHashMap<String, Integer> slowQueries = new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+			return size() > SettingsStore.SLOW_QUERY_LIST_SIZE;
+		}
+	};
+	private static final LinkedHashMap<String, String> slowQueryProfiles = new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > SettingsStore.SLOW_QUERY_LIST_SIZE;
+		}
+	};
+	private static final LinkedHashMap<String, QueryProfiler.Profile> unexplainedProfiles = new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, QueryProfiler.Profile> eldest) {
+			return size() > SettingsStore.SLOW_QUERY_LIST_SIZE;
+		}
+	};
 
 
-	public static String generateKey(Language language, String sequence, String wordFilter, int minimumWords) {
+	private static String generateKey(Language language, String sequence, String wordFilter, int minimumWords) {
 		return language.getId() + "_" + sequence + "_" + wordFilter + "_" + minimumWords;
 	}
 
-	public static void add(Language language, String sequence, String wordFilter, int minimumWords, int time, String positionsList) {
+	public static synchronized void add(Language language, String sequence, String wordFilter, int minimumWords, int time, @Nullable QueryProfiler.Profile profile) {
 		if (firstQueryTime == -1) {
 			firstQueryTime = System.currentTimeMillis();
 		}
@@ -34,24 +61,41 @@ public class SlowQueryStats {
 
 		String key = generateKey(language, sequence, wordFilter, minimumWords);
 		slowQueries.put(key, time);
-		if (!resultCache.containsKey(key)) {
-			resultCache.put(key, positionsList.replaceAll("-\\d+,", ""));
+		if (profile != null) {
+			unexplainedProfiles.put(key, profile);
 		}
 	}
 
-	public static String getCachedIfSlow(String key) {
-		Integer queryTime = slowQueries.get(key);
-		boolean isSlow = queryTime != null && queryTime >= SettingsStore.SLOW_QUERY_TIME;
 
-		if (isSlow) {
-			Logger.d(LOG_TAG, "Loading cached positions for query: " + key);
-			return resultCache.get(key);
-		} else {
+	public static synchronized boolean hasUnexplainedProfiles() {
+		return !unexplainedProfiles.isEmpty();
+	}
+
+
+	/**
+	 * Removes and returns the oldest profile without query plans, or null if there are none.
+	 */
+	@Nullable
+	public static synchronized Map.Entry<String, QueryProfiler.Profile> pollUnexplainedProfile() {
+		Iterator<Map.Entry<String, QueryProfiler.Profile>> iterator = unexplainedProfiles.entrySet().iterator();
+		if (!iterator.hasNext()) {
 			return null;
 		}
+
+		Map.Entry<String, QueryProfiler.Profile> profile = new AbstractMap.SimpleImmutableEntry<>(iterator.next());
+		iterator.remove();
+		return profile;
+	}
+
+
+	public static synchronized void addExplainedProfile(@NonNull String key, @NonNull String report) {
+		Integer time = slowQueries.get(key);
+		if (time != null) {
+			slowQueryProfiles.put(key, time + " ms\n" + report);
+		}
 	}
 
-	public static String getSummary() {
+	public static synchronized String getSummary() {
 		long slowQueryTotalTime = 0;
 		for (int time : slowQueries.values()) {
 			slowQueryTotalTime += time;
@@ -67,7 +111,7 @@ public class SlowQueryStats {
 			"\nFirst: " + TextTools.unixTimestampToISODate(firstQueryTime);
 	}
 
-	public static String getList() {
+	public static synchronized String getList() {
 		StringBuilder sb = new StringBuilder();
 		for (String key : slowQueries.keySet()) {
 			sb.append(key).append(": ").append(slowQueries.get(key)).append(" ms\n");
@@ -77,12 +121,27 @@ public class SlowQueryStats {
 	}
 
 
-	public static void clear() {
+	/**
+	 * Returns the SQL, the result sizes and the query plans of the recent slow queries.
+	 */
+	@NonNull
+	public static synchronized String getProfiles() {
+		StringBuilder sb = new StringBuilder();
+		for (String key : slowQueryProfiles.keySet()) {
+			sb.append(key).append(": ").append(slowQueryProfiles.get(key)).append("\n\n");
+		}
+
+		return sb.toString().trim();
+	}
+
+
+	public static synchronized void clear() {
 		firstQueryTime = -1;
 		maxQueryTime = 0;
 		totalQueries = 0;
 		totalQueryTime = 0;
 		slowQueries.clear();
-		resultCache.clear();
+		slowQueryProfiles.clear();
+		unexplainedProfiles.clear();
 	}
 }
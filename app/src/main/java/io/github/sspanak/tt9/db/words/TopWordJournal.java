@@ -0,0 +1,131 @@
+package io.github.sspanak.tt9.db.words;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.languages.exceptions.InvalidLanguageCharactersException;
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+
+/**
+ * Collects the words accepted by the user, so that their frequencies can be updated later, all at
+ * once, in a single transaction. Until then, the pending words are moved to the top of the
+ * suggestion lists in memory, the same way they will be ordered once saved in the database.
+ *
+ * The words are kept in the order they were accepted, because each one becomes the top word of its
+ * sequence, so applying them in the same order produces the same final frequencies.
+ */
+public class TopWordJournal {
+	private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+
+	public static class Entry {
+		@NonNull public final Language language;
+		@NonNull public final String word;
+		@NonNull public final String sequence;
+
+		private Entry(@NonNull Language language, @NonNull String word, @NonNull String sequence) {
+			this.language = language;
+			this.word = word;
+			this.sequence = sequence;
+		}
+	}
+
+
+	@NonNull
+	private static String generateKey(@NonNull Language language, @NonNull String word) {
+		return language.getId() + "_" + word.toUpperCase(language.getLocale());
+	}
+
+
+	/**
+	 * Adds a word to the end of the journal. If it is already there, it is moved to the end, because
+	 * only the last time it became a top word matters. Returns true, when the journal is full and
+	 * must be saved.
+	 */
+	public static synchronized boolean add(@NonNull Language language, @NonNull String word, @NonNull String sequence) {
+		String key = generateKey(language, word);
+		entries.remove(key);
+		entries.put(key, new Entry(language, word, sequence));
+		return entries.size() >= SettingsStore.TOP_WORD_JOURNAL_MAX_SIZE;
+	}
+
+
+	@NonNull
+	public static synchronized ArrayList<Entry> getAll() {
+		return new ArrayList<>(entries.values());
+	}
+
+
+	/**
+	 * Removes the given entries after they have been saved. The words accepted again in the meantime
+	 * are kept, so that they get saved the next time.
+	 */
+	public static synchronized void remove(@NonNull ArrayList<Entry> saved) {
+		for (Entry entry : saved) {
+			String key = generateKey(entry.language, entry.word);
+			if (entries.get(key) == entry) {
+				entries.remove(key);
+			}
+		}
+	}
+
+
+	public static synchronized boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+
+	/**
+	 * Reorders the suggestions as if the pending words were already saved. Each pending word is moved
+	 * before the highest word with the same sequence. The database orders the words by length, then
+	 * by frequency, so these can only be among the words of the same length right above it. Words
+	 * with other sequences may be mixed with them, so all words of that length are checked.
+	 */
+	public static synchronized void apply(@NonNull Language language, @NonNull ArrayList<String> words) {
+		if (entries.isEmpty() || words.size() < 2) {
+			return;
+		}
+
+		for (Entry entry : entries.values()) {
+			if (entry.language.getId() != language.getId()) {
+				continue;
+			}
+
+			int position = indexOf(language, words, entry.word);
+			int top = position;
+			for (int i = position - 1; i >= 0 && words.get(i).length() == entry.word.length(); i--) {
+				if (entry.sequence.equals(getSequence(language, words.get(i)))) {
+					top = i;
+				}
+			}
+
+			if (top < position) {
+				words.add(top, words.remove(position));
+			}
+		}
+	}
+
+
+	private static int indexOf(@NonNull Language language, @NonNull ArrayList<String> words, @NonNull String word) {
+		String uppercaseWord = word.toUpperCase(language.getLocale());
+		for (int i = 0; i < words.size(); i++) {
+			if (words.get(i).toUpperCase(language.getLocale()).equals(uppercaseWord)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+
+	private static String getSequence(@NonNull Language language, @NonNull String word) {
+		try {
+			return language.getDigitSequenceForWord(word);
+		} catch (InvalidLanguageCharactersException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package io.github.sspanak.tt9.db.words;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.github.sspanak.tt9.db.entities.WordBatch;
+import io.github.sspanak.tt9.db.entities.WordFile;
+import io.github.sspanak.tt9.db.exceptions.DictionaryImportException;
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+import io.github.sspanak.tt9.util.Metrics;
+
+/**
+ * Reads a dictionary file on a separate thread and passes the words to the SQLite writer in batches,
+ * using a bounded queue. This way, unzipping and parsing the next batch runs in parallel with
+ * inserting the previous one. When the writer falls behind, the reader waits, so the memory usage
+ * is limited to a few batches. The batches are reused, once the writer recycles them.
+ */
+class WordBatchReader {
+	@NonNull private final WordFile wordFile;
+	@NonNull private final Language language;
+	private final int positionShift;
+	private final int skipWords;
+
+	@NonNull private final BlockingQueue<WordBatch> queue = new ArrayBlockingQueue<>(SettingsStore.DICTIONARY_IMPORT_QUEUE_SIZE);
+	@NonNull private final ConcurrentLinkedQueue<WordBatch> freeBatches = new ConcurrentLinkedQueue<>();
+	@NonNull private final WordBatch endOfFile;
+	@Nullable private Thread thread;
+
+	@Nullable private volatile Throwable error;
+	private volatile int maxWordsPerSequence = 0;
+
+
+	/**
+	 * @param skipWords the number of words at the beginning of the file, which were imported before.
+	 *                  It must be at the end of a sequence, like the end of each batch.
+	 */
+	WordBatchReader(@NonNull WordFile wordFile, @NonNull Language language, int positionShift, int skipWords) {
+		this.wordFile = wordFile;
+		this.language = language;
+		this.positionShift = positionShift;
+		this.skipWords = skipWords;
+		endOfFile = new WordBatch(language);
+	}
+
+
+	void start() {
+		thread = new Thread(this::read, getClass().getSimpleName());
+		thread.start();
+	}
+
+
+	void stop() {
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+
+	/**
+	 * Waits for the next batch. Returns null when the entire file has been read. If reading fails,
+	 * the error is rethrown here, on the writer thread.
+	 */
+	@Nullable
+	WordBatch take() throws Exception {
+		Metrics.gauge("import.queue", queue.size());
+		WordBatch batch = queue.take();
+		if (batch != endOfFile) {
+			return batch;
+		}
+
+		if (error instanceof Exception) {
+			throw (Exception) error;
+		} else if (error != null) {
+			throw (Error) error;
+		}
+
+		return null;
+	}
+
+
+	int getMaxWordsPerSequence() {
+		return maxWordsPerSequence;
+	}
+
+
+	/**
+	 * Called by the writer, when it is done with a batch, so that it can be filled again, instead of
+	 * allocating a new one.
+	 */
+	void recycle(@NonNull WordBatch batch) {
+		batch.clear();
+		freeBatches.offer(batch);
+	}
+
+
+	@NonNull
+	private WordBatch obtainBatch() {
+		WordBatch batch = freeBatches.poll();
+		return batch != null ? batch : new WordBatch(language, SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE + 1);
+	}
+
+
+	private void read() {
+		WordBatch batch = obtainBatch();
+		int wordCount = 0;
+
+		try (BufferedReader ignored = wordFile.getReader()) {
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					if (!wordFile.next()) {
+						break;
+					}
+				} catch (IOException e) {
+					throw new DictionaryImportException(e.getMessage(), wordCount);
+				}
+
+				int words = wordFile.getWordCount();
+				if (wordCount >= skipWords) {
+					batch.add(wordFile.getBuffer(), wordFile.getSequenceStart(), wordFile.getSequenceEnd(), wordFile.getWordStarts(), wordFile.getWordEnds(), words, wordCount + positionShift);
+				}
+				wordCount += words;
+				maxWordsPerSequence = Math.max(maxWordsPerSequence, words);
+
+				if (batch.size() > SettingsStore.DICTIONARY_IMPORT_BATCH_SIZE) {
+					queue.put(batch);
+					batch = obtainBatch();
+				}
+			}
+
+			queue.put(batch);
+		} catch (InterruptedException e) {
+			// the writer has stopped, nobody is waiting for more batches
+			return;
+		} catch (Exception | Error e) {
+			error = e;
+		}
+
+		try {
+			queue.put(endOfFile);
+		} catch (InterruptedException ignored) {}
+	}
+}
@@ -1,11 +1,14 @@
 package io.github.sspanak.tt9.db.words;
 
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
 import android.os.CancellationSignal;
 
 import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import io.github.sspanak.tt9.db.BaseSyncStore;
 import io.github.sspanak.tt9.db.entities.AddWordResult;
@@ -14,13 +17,16 @@ import io.github.sspanak.tt9.db.entities.Word;
 import io.github.sspanak.tt9.db.entities.WordList;
 import io.github.sspanak.tt9.db.sqlite.DeleteOps;
 import io.github.sspanak.tt9.db.sqlite.InsertOps;
+import io.github.sspanak.tt9.db.sqlite.QueryProfiler;
 import io.github.sspanak.tt9.db.sqlite.ReadOps;
+import io.github.sspanak.tt9.db.sqlite.Tables;
 import io.github.sspanak.tt9.db.sqlite.UpdateOps;
 import io.github.sspanak.tt9.languages.EmojiLanguage;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.languages.NullLanguage;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
 import io.github.sspanak.tt9.util.Logger;
+import io.github.sspanak.tt9.util.Metrics;
 import io.github.sspanak.tt9.util.Text;
 import io.github.sspanak.tt9.util.Timer;
 
@@ -34,6 +40,8 @@ public class WordStore extends BaseSyncStore {
 	public WordStore(@NonNull Context context) {
 		super(context);
 		readOps = new ReadOps();
+		SequenceIndexCache.init(context);
+		HotPositionsCache.init(context);
 	}
 
 
@@ -48,7 +56,10 @@ public class WordStore extends BaseSyncStore {
 		}
 
 		for (Language language : languages) {
-			if (readOps.exists(sqlite.getDb(), language.getId())) {
+			long wordCount = readOps.getWordCount(sqlite.getDb(), language.getId());
+
+			// unknown, when imported before the word counts were stored (see: countNextLanguage())
+			if (wordCount > 0 || (wordCount < 0 && readOps.hasWords(sqlite.getDb(), language.getId()))) {
 				loadedLanguages.add(language.getId());
 			}
 		}
@@ -57,6 +68,36 @@ public class WordStore extends BaseSyncStore {
 	}
 
 
+	/**
+	 * Returns the word count and the estimated size of the tables of each given language, one per
+	 * line. The sizes are measured at the end of each import (see: UpdateOps.updateWordCount()).
+	 */
+	@NonNull
+	public String getTableSizes(@NonNull ArrayList<Language> languages) {
+		if (!checkOrNotify()) {
+			return "";
+		}
+
+		HashMap<Integer, long[]> sizes = readOps.getTableSizes(sqlite.getDb());
+		StringBuilder summary = new StringBuilder();
+		long total = 0;
+
+		for (Language language : languages) {
+			long[] size = sizes.get(language.getId());
+			if (size == null || size[0] == 0) {
+				continue;
+			}
+
+			summary.append(language.getName()).append(": ");
+			summary.append(size[0] < 0 ? "? words" : size[0] + " words").append(", ");
+			summary.append(size[1] < 0 ? "? kB" : size[1] / 1024 + " kB").append("\n");
+			total += Math.max(size[1], 0);
+		}
+
+		return summary.length() == 0 ? "No dictionaries loaded." : summary.append("Total: ").append(total / 1024).append(" kB").toString();
+	}
+
+
 	/**
 	 * Loads words matching and similar to a given digit sequence
 	 * For example: "7655" -> "roll" (exact match), but also: "rolled", "roller", "rolling", ...
@@ -78,25 +119,84 @@ public class WordStore extends BaseSyncStore {
 			return new ArrayList<>();
 		}
 
-		Timer.start("cache_long_positions");
-		readOps.cacheLongPositionsIfMissing(sqlite.getDb(), language);
-		long longPositionsTime = Timer.stop("cache_long_positions");
-
 		final int minWords = Math.max(minimumWords, 0);
 		final int maxWords = Math.max(maximumWords, minWords);
 		final String filter = wordFilter == null ? "" : wordFilter;
 
-		Timer.start("get_positions");
-		String positions = readOps.getSimilarWordPositions(sqlite.getDb(), cancel, language, sequence, filter, minWords);
-		long positionsTime = Timer.stop("get_positions");
+		ArrayList<String> cachedWords = QueryCache.get(language, sequence, filter, minWords, maxWords);
+		if (cachedWords != null) {
+			Metrics.count("query.cache_hits");
+			TopWordJournal.apply(language, cachedWords);
+			return cachedWords;
+		}
+
+		ArrayList<String> words = query(cancel, language, sequence, filter, minWords, maxWords, true);
+		TopWordJournal.apply(language, words);
+		return words;
+	}
+
+
+	/**
+	 * Loads only the words with the same length as the sequence. They are much faster to find than
+	 * the longer ones, so the caller can show them while getMany() is still running. They are not
+	 * cached, because they are not the complete suggestion list for the sequence.
+	 */
+	@NonNull
+	public ArrayList<String> getExactMatches(@NonNull CancellationSignal cancel, @NonNull Language language, @NonNull String sequence, int maxWords) {
+		if (!checkOrNotify() || language instanceof NullLanguage) {
+			return new ArrayList<>();
+		}
+
+		ArrayList<String> words = query(cancel, language, sequence, FILTER_EXACT_MATCHES_ONLY, 0, maxWords, false);
+		TopWordJournal.apply(language, words);
+		return words;
+	}
+
+
+	@NonNull
+	private ArrayList<String> query(@NonNull CancellationSignal cancel, @NonNull Language language, @NonNull String sequence, @NonNull String filter, int minWords, int maxWords, boolean isCacheable) {
+		long longPositionsTime, positionsTime, wordsTime;
+		ArrayList<String> words;
+		boolean isComplete;
+		QueryProfiler.Profile profile;
+		final int cacheRevision = QueryCache.getRevision();
+		SQLiteDatabase db = sqlite.acquireReader();
+
+		try {
+			QueryProfiler.start();
+
+			Timer.start("cache_long_positions");
+			readOps.cacheLongPositionsIfMissing(db, language);
+			longPositionsTime = Timer.stopNanos("cache_long_positions");
+
+			Timer.start("get_positions");
+			String positions = readOps.getSimilarWordPositions(db, cancel, language, sequence, filter, minWords);
+			positionsTime = Timer.stopNanos("get_positions");
 
-		Timer.start("get_words");
-		ArrayList<String> words = readOps.getWords(sqlite.getDb(), cancel, language, positions, filter, maxWords, false).toStringList();
-		long wordsTime = Timer.stop("get_words");
+			Timer.start("get_words");
+			words = readOps.getWords(db, cancel, language, positions, filter, maxWords, false).toStringList();
+			wordsTime = Timer.stopNanos("get_words");
+			isComplete = words.size() < maxWords && readOps.arePositionsComplete(language, positions);
+
+			boolean isSlow = !cancel.isCanceled() && (positionsTime + wordsTime) / 1000000 >= SettingsStore.SLOW_QUERY_TIME;
+			profile = QueryProfiler.stop(isSlow);
+		} finally {
+			sqlite.releaseReader(db);
+		}
+
+		Metrics.record("query.long_positions", longPositionsTime);
+		Metrics.record("query.positions", positionsTime);
+		Metrics.record("query.words", wordsTime);
+		longPositionsTime /= 1000000;
+		positionsTime /= 1000000;
+		wordsTime /= 1000000;
 
 		printLoadingSummary(sequence, words, longPositionsTime, positionsTime, wordsTime);
 		if (!cancel.isCanceled()) { // do not cache empty results from aborted queries
-			SlowQueryStats.add(language, sequence, wordFilter, minWords, (int) (positionsTime + wordsTime), positions);
+			SlowQueryStats.add(language, sequence, filter, minWords, (int) (positionsTime + wordsTime), profile);
+			if (isCacheable) {
+				QueryCache.put(cacheRevision, language, sequence, filter, minWords, maxWords, words, isComplete, positionsTime + wordsTime);
+			}
 		}
 
 		return words;
@@ -104,12 +204,30 @@ public class WordStore extends BaseSyncStore {
 
 
 	@NonNull public ArrayList<String> getSimilarCustom(String wordFilter, int maxWords) {
-		return checkOrNotify() ? readOps.getCustomWords(sqlite.getDb(), wordFilter, maxWords) : new ArrayList<>();
+		if (!checkOrNotify()) {
+			return new ArrayList<>();
+		}
+
+		SQLiteDatabase db = sqlite.acquireReader();
+		try {
+			return readOps.getCustomWords(db, wordFilter, maxWords);
+		} finally {
+			sqlite.releaseReader(db);
+		}
 	}
 
 
 	public long countCustom() {
-		return checkOrNotify() ? readOps.countCustomWords(sqlite.getDb()) : 0;
+		if (!checkOrNotify()) {
+			return 0;
+		}
+
+		SQLiteDatabase db = sqlite.acquireReader();
+		try {
+			return readOps.countCustomWords(db);
+		} finally {
+			sqlite.releaseReader(db);
+		}
 	}
 
 
@@ -128,6 +246,7 @@ public class WordStore extends BaseSyncStore {
 			DeleteOps.deleteCustomWord(sqlite.getDb(), language.getId(), word);
 			DeleteOps.deleteCustomWord(sqlite.getDb(), new EmojiLanguage().getId(), word);
 			sqlite.finishTransaction();
+			QueryCache.clear();
 		} catch (Exception e) {
 			sqlite.failTransaction();
 			Logger.e(LOG_TAG, "Failed deleting custom word: '" + word + "' for language: " + language.getId() + ". " + e.getMessage());
@@ -158,6 +277,7 @@ public class WordStore extends BaseSyncStore {
 			String sequence = language.getDigitSequenceForWord(word);
 
 			if (InsertOps.insertCustomWord(sqlite.getDb(), language, sequence, word)) {
+				QueryCache.clear();
 				makeTopWord(language, word, sequence);
 			} else {
 				throw new Exception("SQLite INSERT failure.");
@@ -173,10 +293,48 @@ public class WordStore extends BaseSyncStore {
 
 
 	public void makeTopWord(@NonNull Language language, @NonNull String word, @NonNull String sequence) {
-		if (!checkOrNotify() || word.isEmpty() || sequence.isEmpty() || language instanceof NullLanguage) {
+		if (checkOrNotify() && changeTopWord(language, word, sequence)) {
+			QueryCache.clear();
+		}
+	}
+
+
+	/**
+	 * Saves the frequencies of all words accepted since the last time, in a single transaction.
+	 */
+	public void saveTopWords() {
+		if (TopWordJournal.isEmpty() || !checkOrNotify()) {
 			return;
 		}
 
+		ArrayList<TopWordJournal.Entry> topWords = TopWordJournal.getAll();
+
+		try {
+			Timer.start("save_top_words");
+			sqlite.beginTransaction();
+			for (TopWordJournal.Entry entry : topWords) {
+				changeTopWord(entry.language, entry.word, entry.sequence);
+			}
+			sqlite.finishTransaction();
+			QueryCache.clear();
+			TopWordJournal.remove(topWords);
+			Logger.d(LOG_TAG, "Saved " + topWords.size() + " top words. Time: " + Timer.stop("save_top_words") + " ms");
+		} catch (Exception e) {
+			sqlite.failTransaction();
+			Logger.e(LOG_TAG, "Failed saving top words. " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Makes the given word the most frequent one for its sequence. Returns true if the frequency
+	 * was changed.
+	 */
+	private boolean changeTopWord(@NonNull Language language, @NonNull String word, @NonNull String sequence) {
+		if (word.isEmpty() || sequence.isEmpty() || language instanceof NullLanguage) {
+			return false;
+		}
+
 		try {
 			Timer.start(LOG_TAG);
 
@@ -189,7 +347,7 @@ public class WordStore extends BaseSyncStore {
 			Word topWord = topWords.get(0);
 			if (topWord.word.toUpperCase(language.getLocale()).equals(word.toUpperCase(language.getLocale()))) {
 				Logger.d(LOG_TAG, "Word '" + word + "' is already the top word. Time: " + Timer.stop(LOG_TAG) + " ms");
-				return;
+				return false;
 			}
 
 			int wordPosition = 0;
@@ -211,8 +369,10 @@ public class WordStore extends BaseSyncStore {
 			}
 
 			Logger.d(LOG_TAG, "Changed frequency of '" + word + "' to: " + newTopFrequency + ". Time: " + Timer.stop(LOG_TAG) + " ms");
+			return true;
 		} catch (Exception e) {
 			Logger.e(LOG_TAG,"Frequency change failed. Word: '" + word + "'. " + e.getMessage());
+			return false;
 		}
 	}
 
@@ -229,6 +389,7 @@ public class WordStore extends BaseSyncStore {
 			NormalizationList normalizationList = readOps.getNextInNormalizationQueue(sqlite.getDb());
 			UpdateOps.normalize(sqlite.getDb(), normalizationList);
 			sqlite.finishTransaction();
+			QueryCache.clear();
 
 			String message = normalizationList.langId > 0 ? "Normalized language: " + normalizationList.langId + ", positions: " + normalizationList.positions : "No languages to normalize";
 			Logger.d(LOG_TAG, message + ". Time: " + Timer.stop(LOG_TAG) + " ms");
@@ -239,6 +400,78 @@ public class WordStore extends BaseSyncStore {
 	}
 
 
+	/**
+	 * Stores the word count and the table size of one language imported before they were stored.
+	 * It takes a full scan, so it is done in the background, once per language.
+	 */
+	public void countNextLanguage() {
+		if (!checkOrNotify()) {
+			return;
+		}
+
+		int langId = readOps.getLanguageWithoutWordCount(sqlite.getDb());
+		if (langId <= 0) {
+			return;
+		}
+
+		long[] tableSize;
+		try {
+			Timer.start(LOG_TAG);
+			tableSize = readOps.measureTables(sqlite.getDb(), langId);
+			Logger.d(LOG_TAG, "Measured the tables of language: " + langId + ". Time: " + Timer.stop(LOG_TAG) + " ms");
+		} catch (Exception e) {
+			Logger.w(LOG_TAG, "Could not measure the tables of language: " + langId + ". Assuming they are empty. " + e.getMessage());
+			tableSize = new long[] { 0, 0 };
+		}
+
+		UpdateOps.setWordCount(sqlite.getDb(), langId, tableSize[0]);
+		UpdateOps.setTableSize(sqlite.getDb(), langId, tableSize[1]);
+	}
+
+
+	/**
+	 * Creates the missing word lookup index of one language. Call it repeatedly, until all languages
+	 * are indexed, so that each call blocks the other writes for a short time only.
+	 */
+	public void createNextLookupIndex() {
+		if (!checkOrNotify()) {
+			return;
+		}
+
+		try {
+			int langId = readOps.getLanguageWithoutLookupIndex(sqlite.getDb());
+			if (langId <= 0) {
+				return;
+			}
+
+			Timer.start(LOG_TAG);
+			Tables.createWordsLookupIndex(sqlite.getDb(), langId);
+			Logger.d(LOG_TAG, "Created the lookup index of language: " + langId + ". Time: " + Timer.stop(LOG_TAG) + " ms");
+		} catch (Exception e) {
+			Logger.e(LOG_TAG, "Creating a lookup index failed. " + e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Adds the query plans to the oldest slow query profile. The plans are not needed while typing, so
+	 * they are made in the background, after the reader of the slow query is released.
+	 */
+	public void explainNextSlowQuery() {
+		Map.Entry<String, QueryProfiler.Profile> profile = SlowQueryStats.pollUnexplainedProfile();
+		if (profile == null || !checkOrNotify()) {
+			return;
+		}
+
+		SQLiteDatabase db = sqlite.acquireReader();
+		try {
+			SlowQueryStats.addExplainedProfile(profile.getKey(), QueryProfiler.explain(db, profile.getValue()));
+		} finally {
+			sqlite.releaseReader(db);
+		}
+	}
+
+
 	public void scheduleNormalization(Language language, String positions) {
 		if (language != null && !(language instanceof NullLanguage) && positions != null && !positions.isEmpty() && checkOrNotify()) {
 			UpdateOps.scheduleNormalization(sqlite.getDb(), language, positions);
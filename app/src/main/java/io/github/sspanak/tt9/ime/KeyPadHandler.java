@@ -7,6 +7,7 @@ import io.github.sspanak.tt9.preferences.screens.debug.ItemInputHandlingMode;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
 import io.github.sspanak.tt9.util.SystemSettings;
 import io.github.sspanak.tt9.util.Timer;
+import io.github.sspanak.tt9.util.Tracing;
 
 
 abstract class KeyPadHandler extends UiHandler {
@@ -47,6 +48,15 @@ abstract class KeyPadHandler extends UiHandler {
 	 */
 	@Override
 	public boolean onKeyDown(int keyCode, KeyEvent event) {
+		int traceId = event.getRepeatCount() == 0 ? Tracing.startTrace(KeyEvent.keyCodeToString(keyCode)) : Tracing.getCurrentId();
+		long start = Tracing.now();
+		boolean isHandled = handleKeyDown(keyCode, event);
+		Tracing.endSpan(traceId, "KeyPadHandler.onKeyDown", start);
+		return isHandled;
+	}
+
+
+	private boolean handleKeyDown(int keyCode, KeyEvent event) {
 		if (debounceKey(keyCode, event)) {
 			return true;
 		}
@@ -143,6 +153,15 @@ abstract class KeyPadHandler extends UiHandler {
 	 */
 	@Override
 	public boolean onKeyUp(int keyCode, KeyEvent event) {
+		int traceId = Tracing.getCurrentId();
+		long start = Tracing.now();
+		boolean isHandled = handleKeyUp(keyCode, event);
+		Tracing.endSpan(traceId, "KeyPadHandler.onKeyUp", start);
+		return isHandled;
+	}
+
+
+	private boolean handleKeyUp(int keyCode, KeyEvent event) {
 		if (debounceKey(keyCode, event)) {
 			return true;
 		}
@@ -191,7 +210,10 @@ abstract class KeyPadHandler extends UiHandler {
 
 
 	private boolean handleHotkey(int keyCode, boolean hold, boolean repeat, boolean validateOnly) {
-		return onHotkey(keyCode * (hold ? -1 : 1), repeat, validateOnly);
+		long start = validateOnly ? 0 : Tracing.now();
+		boolean isHandled = onHotkey(keyCode * (hold ? -1 : 1), repeat, validateOnly);
+		Tracing.endSpan(Tracing.getCurrentId(), "HotkeyHandler.onHotkey", start);
+		return isHandled;
 	}
 
 
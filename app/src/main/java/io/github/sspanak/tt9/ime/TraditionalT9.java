@@ -168,6 +168,7 @@ public class TraditionalT9 extends MainViewHandler {
 	protected void onStop() {
 		stopVoiceInput();
 		onFinishTyping();
+		DataStore.saveTopWords();
 		suggestionOps.clear();
 		setStatusIcon(mInputMode);
 		statusBar.setText(mInputMode);
@@ -265,9 +266,13 @@ public class TraditionalT9 extends MainViewHandler {
 
 
 	private void runBackgroundTasks() {
+		DataStore.saveTopWords();
 		DataStore.saveWordPairs();
+		DataStore.saveHotPositions();
 		if (!DictionaryLoader.getInstance(this).isRunning()) {
 			DataStore.normalizeNext();
+			DataStore.countNextLanguage();
+			DataStore.createNextLookupIndex();
 		}
 	}
 }
@@ -8,8 +8,6 @@ import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
 
-import io.github.sspanak.tt9.R;
-import io.github.sspanak.tt9.db.words.DictionaryLoader;
 import io.github.sspanak.tt9.hacks.AppHacks;
 import io.github.sspanak.tt9.hacks.InputType;
 import io.github.sspanak.tt9.ime.helpers.CursorOps;
@@ -23,8 +21,8 @@ import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.languages.LanguageCollection;
 import io.github.sspanak.tt9.languages.LanguageKind;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
-import io.github.sspanak.tt9.ui.UI;
 import io.github.sspanak.tt9.util.Text;
+import io.github.sspanak.tt9.util.Tracing;
 
 public abstract class TypingHandler extends KeyPadHandler {
 	// internal settings/data
@@ -148,7 +146,7 @@ public abstract class TypingHandler extends KeyPadHandler {
 			textField.deleteChars(charsToDelete);
 		}
 
-		if (settings.getBackspaceRecomposing() && repeat == 0 && suggestionOps.isEmpty() && !DictionaryLoader.getInstance(this).isRunning()) {
+		if (settings.getBackspaceRecomposing() && repeat == 0 && suggestionOps.isEmpty()) {
 			final String previousWord = textField.getWordBeforeCursor(mLanguage, 0, false);
 			if (mInputMode.recompose(previousWord) && textField.recompose(previousWord)) {
 				getSuggestions(previousWord);
@@ -172,6 +170,7 @@ public abstract class TypingHandler extends KeyPadHandler {
 	 * @return boolean
 	 */
 	protected boolean onNumber(int key, boolean hold, int repeat) {
+		long start = Tracing.now();
 		suggestionOps.cancelDelayedAccept();
 
 
@@ -197,6 +196,7 @@ public abstract class TypingHandler extends KeyPadHandler {
 
 		if (!mInputMode.onNumber(key, hold, repeat)) {
 			forceShowWindow();
+			Tracing.endSpan(Tracing.getCurrentId(), "TypingHandler.onNumber", start);
 			return false;
 		}
 
@@ -207,6 +207,7 @@ public abstract class TypingHandler extends KeyPadHandler {
 			getSuggestions(null);
 		}
 
+		Tracing.endSpan(Tracing.getCurrentId(), "TypingHandler.onNumber", start);
 		return true;
 	}
 
@@ -364,14 +365,13 @@ public abstract class TypingHandler extends KeyPadHandler {
 
 
 	protected void getSuggestions(@Nullable String currentWord) {
-		if (InputModeKind.isPredictive(mInputMode) && DictionaryLoader.getInstance(this).isRunning()) {
-			mInputMode.reset();
-			UI.toastShortSingle(this, R.string.dictionary_loading_please_wait);
-		} else {
-			mInputMode
-				.setOnSuggestionsUpdated(this::handleSuggestions)
-				.loadSuggestions(currentWord == null ? suggestionOps.getCurrent() : currentWord);
-		}
+		// The dictionaries are imported into shadow tables (see: ShadowTables), so the current words
+		// remain available while loading.
+		long start = Tracing.now();
+		mInputMode
+			.setOnSuggestionsUpdated(this::handleSuggestions)
+			.loadSuggestions(currentWord == null ? suggestionOps.getCurrent() : currentWord);
+		Tracing.endSpan(Tracing.getCurrentId(), "InputMode.loadSuggestions", start);
 	}
 
 
@@ -412,6 +412,7 @@ public abstract class TypingHandler extends KeyPadHandler {
 
 
 	protected void scrollSuggestions(boolean backward) {
+		mInputMode.stopLoadingSuggestions();
 		suggestionOps.cancelDelayedAccept();
 		suggestionOps.scrollTo(backward ? -1 : 1);
 		mInputMode.setWordStem(suggestionOps.getCurrent(), true);
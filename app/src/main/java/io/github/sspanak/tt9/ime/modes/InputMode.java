@@ -133,6 +133,11 @@ abstract public class InputMode {
 	public boolean recompose(String word) { return false; }
 	public void replaceLastLetter() {}
 
+	/**
+	 * Discards the suggestions that are still loading, so that they do not replace the current ones.
+	 */
+	public void stopLoadingSuggestions() {}
+
 	public void reset() {
 		autoAcceptTimeout = -1;
 		specialCharSelectedGroup = 0;
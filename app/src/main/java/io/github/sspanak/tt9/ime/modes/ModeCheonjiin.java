@@ -196,6 +196,15 @@ class ModeCheonjiin extends InputMode {
 
 	protected void basicReset() {
 		super.reset();
+		stopLoadingSuggestions();
+	}
+
+
+	@Override
+	public void stopLoadingSuggestions() {
+		if (predictions != null) {
+			predictions.cancel();
+		}
 	}
 
 
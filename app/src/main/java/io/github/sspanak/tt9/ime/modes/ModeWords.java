@@ -299,6 +299,7 @@ class ModeWords extends ModeCheonjiin {
 	 */
 	@Override
 	public void onAcceptSuggestion(@NonNull String currentWord, boolean preserveWords) {
+		stopLoadingSuggestions();
 		lastAcceptedWord = currentWord;
 
 		if (preserveWords) {
@@ -0,0 +1,349 @@
+package io.github.sspanak.tt9.ime.modes;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.inputmethod.BaseInputConnection;
+import android.view.inputmethod.EditorInfo;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+import io.github.sspanak.tt9.db.entities.WordFile;
+import io.github.sspanak.tt9.db.words.DictionaryLoader;
+import io.github.sspanak.tt9.hacks.InputType;
+import io.github.sspanak.tt9.ime.helpers.TextField;
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+import io.github.sspanak.tt9.util.ConsumerCompat;
+import io.github.sspanak.tt9.util.Logger;
+
+/**
+ * Types a list of words in each given language, using the Predictive mode and a text field, which
+ * is not connected to any app, and measures the time from each key press to the new suggestions.
+ * The keys go through the same path as when typing: InputMode, WordPredictions and DataStore, so the
+ * results include the queries, the sorting and the word pairs.
+ *
+ * The words are picked evenly from the dictionary file, from the most to the least frequent. Some
+ * of them are typed with a mistake corrected with Backspace, others are filtered before accepting.
+ * There is a pause between the keys, like when a person is typing, so the prefetching has a chance
+ * to run. The accepted words are not learned, because this would change the frequencies and the
+ * word pairs of the user, and the next runs would be measured on different data. Syllabaries are
+ * skipped.
+ */
+public class TypingBenchmark {
+	private static final String LOG_TAG = TypingBenchmark.class.getSimpleName();
+	private static TypingBenchmark self;
+
+	private static final String ACCEPT = "=";
+	private static final String BACKSPACE = "<";
+	private static final String FILTER = "*";
+
+	private final Handler handler = new Handler(Looper.getMainLooper());
+	private final Runnable nextStep = this::runNextStep;
+	private final Runnable onTimeout = this::onTimeout;
+
+	private ConsumerCompat<String> onProgress;
+	private ConsumerCompat<String> onFinish;
+	private boolean isRunning = false;
+	private boolean isStopped = false;
+	@NonNull private String results = "";
+	private StringBuilder report;
+
+	private Context context;
+	private SettingsStore settings;
+	private final ArrayDeque<Language> languages = new ArrayDeque<>();
+	private final HashMap<Integer, ArrayList<String>> traces = new HashMap<>();
+
+	private Language language;
+	private ArrayList<String> trace;
+	private int stepIndex;
+	private InputMode inputMode;
+	private BaseInputConnection connection;
+
+	private boolean isWaiting = false;
+	private long keyStartTime;
+	private long[] latencies = new long[256];
+	private int keys;
+	private int timeouts;
+
+
+	public static TypingBenchmark getInstance() {
+		if (self == null) {
+			self = new TypingBenchmark();
+		}
+
+		return self;
+	}
+
+
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+
+	@NonNull
+	public String getResults() {
+		return results;
+	}
+
+
+	/**
+	 * Must be called on the UI thread, where the suggestions arrive. "onProgress" receives the name
+	 * of the current language and "onFinish" receives the results, also on the UI thread.
+	 */
+	public boolean start(@NonNull Context context, @NonNull SettingsStore settings, @NonNull ArrayList<Language> languages, @NonNull ConsumerCompat<String> onProgress, @NonNull ConsumerCompat<String> onFinish) {
+		if (isRunning || DictionaryLoader.getInstance(context).isRunning()) {
+			return false;
+		}
+
+		isRunning = true;
+		isStopped = false;
+		report = new StringBuilder();
+		this.context = context;
+		this.settings = settings;
+		this.onProgress = onProgress;
+		this.onFinish = onFinish;
+		this.languages.clear();
+		for (Language language : languages) {
+			if (!language.isSyllabary()) {
+				this.languages.add(language);
+			}
+		}
+
+		new Thread(() -> {
+			traces.clear();
+			for (Language language : this.languages) {
+				traces.put(language.getId(), generateTrace(context, language));
+			}
+			handler.post(this::nextLanguage);
+		}, LOG_TAG).start();
+
+		return true;
+	}
+
+
+	public void stop() {
+		isStopped = true;
+	}
+
+
+	/**
+	 * Picks words evenly from the dictionary file and converts them to key presses, one key per item,
+	 * followed by the word to accept. Words with punctuation or spaces are skipped, because they are
+	 * typed differently.
+	 */
+	@NonNull
+	private static ArrayList<String> generateTrace(@NonNull Context context, @NonNull Language language) {
+		ArrayList<String> trace = new ArrayList<>();
+		WordFile wordFile = new WordFile(context, language, context.getAssets());
+		if (!wordFile.exists()) {
+			return trace;
+		}
+
+		int step = Math.max(1, wordFile.getWords() / SettingsStore.TYPING_BENCHMARK_WORDS);
+
+		try (BufferedReader ignored = wordFile.getReader()) {
+			for (int words = 0, nextWord = 0, sampled = 0; sampled < SettingsStore.TYPING_BENCHMARK_WORDS && wordFile.next(); words += wordFile.getWordCount()) {
+				String sequence = new String(wordFile.getBuffer(), wordFile.getSequenceStart(), wordFile.getSequenceEnd() - wordFile.getSequenceStart());
+				if (words < nextWord || sequence.length() < 2 || sequence.contains("0") || sequence.contains("1")) {
+					continue;
+				}
+
+				String word = new String(wordFile.getBuffer(), wordFile.getWordStarts()[0], wordFile.getWordEnds()[0] - wordFile.getWordStarts()[0]);
+				addWord(trace, word, sequence, sampled);
+				nextWord = words + step;
+				sampled++;
+			}
+		} catch (Exception e) {
+			Logger.e(LOG_TAG, "Could not generate the key presses for language: " + language.getName() + ". " + e.getMessage());
+		}
+
+		return trace;
+	}
+
+
+	private static void addWord(@NonNull ArrayList<String> trace, @NonNull String word, @NonNull String sequence, int index) {
+		for (int i = 0; i < sequence.length(); i++) {
+			trace.add(String.valueOf(sequence.charAt(i)));
+
+			if (index % 10 == 3 && i == sequence.length() / 2) {
+				trace.add(BACKSPACE);
+				trace.add(String.valueOf(sequence.charAt(i)));
+			}
+		}
+
+		if (index % 5 == 1) {
+			trace.add(FILTER);
+		}
+
+		trace.add(ACCEPT + word);
+	}
+
+
+	private void nextLanguage() {
+		if (isStopped || languages.isEmpty()) {
+			finish();
+			return;
+		}
+
+		language = languages.poll();
+		trace = traces.get(language.getId());
+		stepIndex = 0;
+		keys = 0;
+		timeouts = 0;
+
+		EditorInfo field = new EditorInfo();
+		field.inputType = EditorInfo.TYPE_CLASS_TEXT;
+		field.packageName = context.getPackageName();
+		connection = new BaseInputConnection(new View(context), true);
+
+		inputMode = InputMode.getInstance(settings, language, new InputType(connection, field), new TextField(connection, field), InputMode.MODE_PREDICTIVE);
+		inputMode.setOnSuggestionsUpdated(this::onSuggestions);
+
+		onProgress.accept(language.getName());
+		handler.post(nextStep);
+	}
+
+
+	private void runNextStep() {
+		if (isStopped) {
+			finish();
+			return;
+		}
+
+		if (trace == null || stepIndex >= trace.size()) {
+			addLanguageReport();
+			nextLanguage();
+			return;
+		}
+
+		String item = trace.get(stepIndex++);
+		if (item.startsWith(ACCEPT)) {
+			// reset() instead of onAcceptSuggestion(), to avoid learning the word
+			String word = item.substring(ACCEPT.length());
+			inputMode.reset();
+			connection.commitText(word + " ", 1);
+			handler.post(nextStep);
+			return;
+		}
+
+		keyStartTime = System.nanoTime();
+
+		boolean isHandled;
+		if (item.equals(BACKSPACE)) {
+			isHandled = inputMode.onBackspace();
+		} else if (item.equals(FILTER)) {
+			ArrayList<String> suggestions = inputMode.getSuggestions();
+			isHandled = !suggestions.isEmpty() && inputMode.setWordStem(suggestions.get(0), true);
+		} else {
+			isHandled = inputMode.onNumber(item.charAt(0) - '0', false, 0);
+		}
+
+		if (!isHandled) {
+			scheduleNextStep();
+			return;
+		}
+
+		isWaiting = true;
+		handler.postDelayed(onTimeout, SettingsStore.SLOW_QUERY_TIMEOUT);
+		inputMode.loadSuggestions("");
+	}
+
+
+	/**
+	 * When the query is slow, the suggestions arrive twice (see: DataStore.getWords()). Only the first
+	 * time matters, because this is when the user sees them.
+	 */
+	private void onSuggestions() {
+		if (!isWaiting) {
+			return;
+		}
+
+		isWaiting = false;
+		handler.removeCallbacks(onTimeout);
+
+		if (keys == latencies.length) {
+			latencies = Arrays.copyOf(latencies, keys * 2);
+		}
+		latencies[keys++] = System.nanoTime() - keyStartTime;
+
+		scheduleNextStep();
+	}
+
+
+	private void onTimeout() {
+		if (isWaiting) {
+			isWaiting = false;
+			timeouts++;
+			scheduleNextStep();
+		}
+	}
+
+
+	private void scheduleNextStep() {
+		long elapsed = (System.nanoTime() - keyStartTime) / 1000000;
+		handler.postDelayed(nextStep, Math.max(0, SettingsStore.TYPING_BENCHMARK_KEY_INTERVAL - elapsed));
+	}
+
+
+	private void addLanguageReport() {
+		long[] sorted = Arrays.copyOf(latencies, keys);
+		Arrays.sort(sorted);
+
+		String languageReport = String.format(
+			Locale.ROOT,
+			"%s: %d keys, p50: %.1f ms, p95: %.1f ms, p99: %.1f ms, max: %.1f ms, timeouts: %d",
+			language.getName(),
+			keys,
+			getPercentile(sorted, 50),
+			getPercentile(sorted, 95),
+			getPercentile(sorted, 99),
+			keys > 0 ? sorted[keys - 1] / 1e6 : 0,
+			timeouts
+		);
+
+		Logger.i(LOG_TAG, languageReport);
+		report.append(languageReport).append("\n");
+	}
+
+
+	private static double getPercentile(@NonNull long[] sorted, int percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+
+
+	private void finish() {
+		handler.removeCallbacks(nextStep);
+		handler.removeCallbacks(onTimeout);
+
+		if (inputMode != null) {
+			inputMode.reset();
+		}
+
+		if (isStopped) {
+			report.append("Aborted.");
+		}
+
+		inputMode = null;
+		connection = null;
+		context = null;
+		traces.clear();
+		isRunning = false;
+
+		results = report.length() > 0 ? report.toString().trim() : "No languages.";
+		onFinish.accept(results);
+	}
+}
@@ -9,6 +9,7 @@ import io.github.sspanak.tt9.db.words.WordStore;
 import io.github.sspanak.tt9.languages.Language;
 import io.github.sspanak.tt9.languages.NullLanguage;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+import io.github.sspanak.tt9.util.Tracing;
 
 abstract public class Predictions {
 	protected final SettingsStore settings;
@@ -23,6 +24,7 @@ abstract public class Predictions {
 
 	// async operations
 	protected Runnable onWordsChanged = () -> {};
+	protected int loadId = 0;
 
 	// data
 	protected boolean areThereDbWords = false;
@@ -64,6 +66,16 @@ abstract public class Predictions {
 	}
 
 
+	/**
+	 * Ignores the words of the current load(), when they arrive. Use it when the user has already
+	 * accepted or scrolled the suggestions, or when the input mode was reset, so that the late results
+	 * of a slow query do not replace the current ones.
+	 */
+	public void cancel() {
+		loadId++;
+	}
+
+
 	public boolean containsGeneratedWords() {
 		return containsGeneratedWords;
 	}
@@ -96,6 +108,8 @@ abstract public class Predictions {
 	/**
 	 * load
 	 * Queries the dictionary database for a list of words matching the current language and sequence.
+	 * When the query is slow, the exact matches arrive first, so "onWordsChanged" may be called twice.
+	 * Any words arriving after cancel() or after the next load() are ignored.
 	 */
 	public void load() {
 		containsGeneratedWords = false;
@@ -106,8 +120,21 @@ abstract public class Predictions {
 			return;
 		}
 
+		final int traceId = Tracing.getCurrentId();
+		final int currentLoadId = ++loadId;
+
 		DataStore.getWords(
-			(dbWords) -> onDbWords(dbWords, isRetryAllowed()),
+			(dbWords) -> {
+				if (currentLoadId != loadId) {
+					return;
+				}
+
+				int previousTraceId = Tracing.resume(traceId);
+				long start = Tracing.now();
+				onDbWords(dbWords, isRetryAllowed());
+				Tracing.endSpan(traceId, "Predictions.onDbWords", start);
+				Tracing.resume(previousTraceId);
+			},
 			language,
 			digitSequence,
 			onlyExactMatches ? WordStore.FILTER_EXACT_MATCHES_ONLY : stem,
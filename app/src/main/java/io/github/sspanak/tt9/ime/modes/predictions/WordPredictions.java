@@ -57,8 +57,14 @@ public class WordPredictions extends Predictions {
 
 
 	private void loadWithoutLeadingPunctuation() {
+		final int currentLoadId = loadId;
+
 		DataStore.getWords(
 			(dbWords) -> {
+				if (currentLoadId != loadId) {
+					return;
+				}
+
 				char firstChar = inputWord.isEmpty() ? 0 : inputWord.charAt(0);
 				for (int i = 0; firstChar > 0 && i < dbWords.size(); i++) {
 					dbWords.set(i, firstChar + dbWords.get(i));
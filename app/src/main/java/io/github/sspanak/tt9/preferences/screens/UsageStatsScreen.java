@@ -4,21 +4,30 @@ import androidx.preference.Preference;
 
 import io.github.sspanak.tt9.R;
 import io.github.sspanak.tt9.db.DataStore;
+import io.github.sspanak.tt9.db.customWords.SlowQueryExporter;
+import io.github.sspanak.tt9.db.words.HotPositionsCache;
+import io.github.sspanak.tt9.db.words.QueryCache;
+import io.github.sspanak.tt9.db.words.SequenceIndexCache;
 import io.github.sspanak.tt9.db.words.SlowQueryStats;
 import io.github.sspanak.tt9.languages.LanguageCollection;
 import io.github.sspanak.tt9.preferences.PreferencesActivity;
 import io.github.sspanak.tt9.preferences.items.ItemText;
+import io.github.sspanak.tt9.preferences.screens.debug.ItemExportSlowQueries;
 import io.github.sspanak.tt9.ui.UI;
+import io.github.sspanak.tt9.util.Metrics;
 
 public class UsageStatsScreen extends BaseScreenFragment {
 	final public static String NAME = "UsageStats";
 	final private static String RESET_SLOW_QUERIES_BUTTON = "slow_queries_clear_cache";
+	final private static String SLOW_QUERY_PLANS_CONTAINER = "query_plans_container";
 	final private static String RESET_WORD_PAIRS_CACHE_BUTTON = "word_pair_clear_cache";
 	final private static String RESET_WORD_PAIRS_DB_BUTTON = "word_pair_clear_db";
 
 	final private static String SLOW_QUERY_STATS_CONTAINER = "summary_container";
+	final private static String TABLE_SIZES_CONTAINER = "table_sizes_container";
 	final private static String WORD_PAIRS_CONTAINER = "word_pairs_container";
 	private ItemText queryListContainer;
+	private ItemText queryPlansContainer;
 
 	public UsageStatsScreen() { init(); }
 	public UsageStatsScreen(PreferencesActivity activity) { init(activity); }
@@ -29,9 +38,11 @@ public class UsageStatsScreen extends BaseScreenFragment {
 
 	@Override
 	protected void onCreate() {
-		print(SLOW_QUERY_STATS_CONTAINER, SlowQueryStats.getSummary());
+		print(SLOW_QUERY_STATS_CONTAINER, getQueryStats());
 		print(WORD_PAIRS_CONTAINER, DataStore.getWordPairStats());
+		DataStore.getTableSizes((sizes) -> print(TABLE_SIZES_CONTAINER, sizes), LanguageCollection.getAll());
 		printSlowQueries();
+		(new ItemExportSlowQueries(findPreference(ItemExportSlowQueries.NAME), activity)).enableClickHandler();
 
 		Preference slowQueriesButton = findPreference(RESET_SLOW_QUERIES_BUTTON);
 		if (slowQueriesButton != null) {
@@ -58,6 +69,10 @@ public class UsageStatsScreen extends BaseScreenFragment {
 		}
 	}
 
+	private String getQueryStats() {
+		return SlowQueryStats.getSummary() + "\n" + DataStore.getWordQueryStats() + "\n" + SequenceIndexCache.getSummary() + "\n" + HotPositionsCache.getSummary() + "\n" + QueryCache.getSummary() + "\n\n" + Metrics.getSummary();
+	}
+
 	private void printSlowQueries() {
 		if (queryListContainer == null) {
 			queryListContainer = new ItemText(activity, findPreference("query_list_container"));
@@ -66,11 +81,22 @@ public class UsageStatsScreen extends BaseScreenFragment {
 
 		String slowQueries = SlowQueryStats.getList();
 		queryListContainer.populate(slowQueries.isEmpty() ? "No slow queries." : slowQueries);
+
+		if (queryPlansContainer == null) {
+			queryPlansContainer = new ItemText(activity, findPreference(SLOW_QUERY_PLANS_CONTAINER));
+			queryPlansContainer.enableClickHandler();
+		}
+
+		queryPlansContainer.populate(SlowQueryExporter.getProfiles());
 	}
 
 	private boolean resetSlowQueries(Preference ignored) {
 		SlowQueryStats.clear();
-		print(SLOW_QUERY_STATS_CONTAINER, SlowQueryStats.getSummary());
+		QueryCache.clear();
+		QueryCache.resetStats();
+		DataStore.resetWordQueryStats();
+		Metrics.clear();
+		print(SLOW_QUERY_STATS_CONTAINER, getQueryStats());
 		printSlowQueries();
 		return true;
 	}
@@ -24,7 +24,10 @@ public class DebugScreen extends BaseScreenFragment {
 		(new ItemInputHandlingMode(findPreference(ItemInputHandlingMode.NAME), activity.getSettings())).populate().preview().enableClickHandler();
 		(new ItemText(activity, findPreference(DEVICE_INFO_CONTAINER))).populate(new DeviceInfo().toString()).enableClickHandler();
 		(new ItemExportLogcat(findPreference(ItemExportLogcat.NAME), activity)).enableClickHandler();
+		(new ItemExportTraces(findPreference(ItemExportTraces.NAME), activity)).enableClickHandler();
 		(new ItemDemoMode(findPreference(ItemDemoMode.NAME), activity)).populate().enableClickHandler();
+		(new ItemImportBenchmark(findPreference(ItemImportBenchmark.NAME), activity)).populate().enableClickHandler();
+		(new ItemTypingBenchmark(findPreference(ItemTypingBenchmark.NAME), activity)).populate().enableClickHandler();
 
 		resetFontSize(false);
 	}
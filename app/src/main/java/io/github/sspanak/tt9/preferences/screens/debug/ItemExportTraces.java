@@ -0,0 +1,40 @@
+package io.github.sspanak.tt9.preferences.screens.debug;
+
+import androidx.preference.Preference;
+
+import io.github.sspanak.tt9.db.customWords.TraceExporter;
+import io.github.sspanak.tt9.preferences.PreferencesActivity;
+import io.github.sspanak.tt9.preferences.items.ItemExportAbstract;
+import io.github.sspanak.tt9.ui.notifications.DictionaryProgressNotification;
+
+public class ItemExportTraces extends ItemExportAbstract {
+	public static final String NAME = "pref_export_traces";
+
+	public ItemExportTraces(Preference item, PreferencesActivity activity) {
+		super(item, activity, null, null);
+	}
+
+	@Override
+	protected TraceExporter getProcessor() {
+		return TraceExporter.getInstance();
+	}
+
+	@Override
+	protected boolean onStartProcessing() {
+		return getProcessor().run(activity);
+	}
+
+	@Override
+	protected void onFinishProcessing(String outputFile) {
+		activity.runOnUiThread(() -> {
+			DictionaryProgressNotification.getInstance(activity).hide();
+			setAndNotifyReady();
+
+			if (outputFile == null) {
+				item.setSummary("Export failed");
+			} else {
+				item.setSummary("Traces exported to: " + outputFile);
+			}
+		});
+	}
+}
@@ -0,0 +1,50 @@
+package io.github.sspanak.tt9.preferences.screens.debug;
+
+import androidx.preference.Preference;
+
+import io.github.sspanak.tt9.db.words.ImportBenchmark;
+import io.github.sspanak.tt9.languages.LanguageCollection;
+import io.github.sspanak.tt9.preferences.PreferencesActivity;
+import io.github.sspanak.tt9.preferences.items.ItemClickable;
+
+class ItemImportBenchmark extends ItemClickable {
+	public static final String NAME = "pref_import_benchmark";
+
+	private final PreferencesActivity activity;
+
+	ItemImportBenchmark(Preference item, PreferencesActivity activity) {
+		super(item);
+		this.activity = activity;
+	}
+
+	@Override
+	protected boolean onClick(Preference p) {
+		ImportBenchmark benchmark = ImportBenchmark.getInstance();
+
+		if (benchmark.isRunning()) {
+			benchmark.stop();
+			return true;
+		}
+
+		boolean isStarted = benchmark.start(
+			activity,
+			LanguageCollection.getAll(true),
+			(language) -> activity.runOnUiThread(() -> item.setSummary("Measuring: " + language + "... (tap to stop)")),
+			(results) -> activity.runOnUiThread(() -> item.setSummary(results))
+		);
+
+		if (!isStarted) {
+			item.setSummary("Can not start while loading dictionaries.");
+		}
+
+		return true;
+	}
+
+	ItemImportBenchmark populate() {
+		if (item != null && !ImportBenchmark.getInstance().getResults().isEmpty()) {
+			item.setSummary(ImportBenchmark.getInstance().getResults());
+		}
+
+		return this;
+	}
+}
@@ -0,0 +1,65 @@
+package io.github.sspanak.tt9.preferences.screens.debug;
+
+import androidx.preference.Preference;
+
+import java.util.ArrayList;
+
+import io.github.sspanak.tt9.db.DataStore;
+import io.github.sspanak.tt9.ime.modes.TypingBenchmark;
+import io.github.sspanak.tt9.languages.Language;
+import io.github.sspanak.tt9.languages.LanguageCollection;
+import io.github.sspanak.tt9.preferences.PreferencesActivity;
+import io.github.sspanak.tt9.preferences.items.ItemClickable;
+
+class ItemTypingBenchmark extends ItemClickable {
+	public static final String NAME = "pref_typing_benchmark";
+
+	private final PreferencesActivity activity;
+
+	ItemTypingBenchmark(Preference item, PreferencesActivity activity) {
+		super(item);
+		this.activity = activity;
+	}
+
+	@Override
+	protected boolean onClick(Preference p) {
+		TypingBenchmark benchmark = TypingBenchmark.getInstance();
+
+		if (benchmark.isRunning()) {
+			benchmark.stop();
+			return true;
+		}
+
+		ArrayList<Language> enabledLanguages = LanguageCollection.getAll(activity.getSettings().getEnabledLanguageIds());
+		DataStore.exists((loadedIds) -> start(benchmark, LanguageCollection.getAll(loadedIds)), enabledLanguages);
+
+		return true;
+	}
+
+	private void start(TypingBenchmark benchmark, ArrayList<Language> languages) {
+		if (languages.isEmpty()) {
+			item.setSummary("No dictionaries loaded for the enabled languages.");
+			return;
+		}
+
+		boolean isStarted = benchmark.start(
+			activity,
+			activity.getSettings(),
+			languages,
+			(language) -> item.setSummary("Typing in: " + language + "... (tap to stop)"),
+			item::setSummary
+		);
+
+		if (!isStarted) {
+			item.setSummary("Can not start while loading dictionaries.");
+		}
+	}
+
+	ItemTypingBenchmark populate() {
+		if (item != null && !TypingBenchmark.getInstance().getResults().isEmpty()) {
+			item.setSummary(TypingBenchmark.getInstance().getResults());
+		}
+
+		return this;
+	}
+}
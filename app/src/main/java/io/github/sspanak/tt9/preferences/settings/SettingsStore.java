@@ -13,12 +13,23 @@ public class SettingsStore extends SettingsUI {
 	public final static int CUSTOM_WORDS_IMPORT_MAX_LINES = 250;
 	public final static int CUSTOM_WORDS_MAX = 1000;
 	public final static int CUSTOM_WORDS_SEARCH_RESULTS_MAX = 50;
+	public final static int DATABASE_READERS = 3; // suggestions + exact matches + prefetching
+	public final static int DATA_STORE_MAX_YIELD_TIME = 500; // ms
 	public final static int DICTIONARY_AUTO_LOAD_COOLDOWN_TIME = 1200000; // 20 minutes in ms
 	public final static int DICTIONARY_DOWNLOAD_CONNECTION_TIMEOUT = 10000; // ms
 	public final static int DICTIONARY_DOWNLOAD_READ_TIMEOUT = 10000; // ms
 	public final static int DICTIONARY_IMPORT_BATCH_SIZE = 5000; // words
+	public final static int DICTIONARY_IMPORT_BUFFER_SIZE = 65536; // chars
+	public final static int DICTIONARY_IMPORT_MAX_THREADS = 4;
+	public final static int DICTIONARY_IMPORT_QUEUE_SIZE = 4; // batches
 	public final static int DICTIONARY_IMPORT_PROGRESS_UPDATE_TIME = 250; // ms
+	public final static int HOT_POSITIONS_CACHE_SIZE = 1000; // sequences per language
+	public final static int HOT_POSITIONS_MAX_SEQUENCE_LENGTH = 4;
+	public final static int HOT_POSITIONS_SAVE_SIZE = 250; // sequences per language
+	public final static int QUERY_CACHE_MAX_BYTES = 512 * 1024;
+	public final static int QUERY_CACHE_MAX_ENTRIES = 200;
 	public final static int RESIZE_THROTTLING_TIME = 60; // ms
+	public final static int SLOW_QUERY_LIST_SIZE = 100;
 	public final static byte SLOW_QUERY_TIME = 50; // ms
 	public final static int SLOW_QUERY_TIMEOUT = 3000; // ms
 	public final static float SOFT_KEY_AMOUNT_OF_KEY_SIZE_FOR_SWIPE = 0.5f; // 1 = full key size
@@ -31,6 +42,7 @@ public class SettingsStore extends SettingsUI {
 	public final static int SOFT_KEY_TITLE_MAX_CHARS_INDIC = 3;
 	public final static float SOFT_KEY_V_SHAPE_RATIO_INNER = 1.1f;
 	public final static float SOFT_KEY_V_SHAPE_RATIO_OUTER = (float) Math.pow(SOFT_KEY_V_SHAPE_RATIO_INNER, 2);
+	public final static int SUGGESTIONS_LATENCY_BUDGET = 32; // ms, about 2 frames
 	public final static int SUGGESTIONS_MAX = 20;
 	public final static int SUGGESTIONS_MIN = 8;
 	public final static int SUGGESTIONS_POSITIONS_LIMIT = 100;
@@ -38,10 +50,14 @@ public class SettingsStore extends SettingsUI {
 	public final static int SUGGESTIONS_TRANSLATE_ANIMATION_DURATION = 0;
 	public final static int TEXT_INPUT_DEBOUNCE_TIME = 500; // ms
 	public final static int TEXT_INPUT_PUNCTUATION_ORDER_DEBOUNCE_TIME = 100; // ms
+	public final static int TOP_WORD_JOURNAL_MAX_SIZE = 50; // words
+	public final static int TRACE_BUFFER_SIZE = 100; // key presses
+	public final static int TYPING_BENCHMARK_KEY_INTERVAL = 150; // ms
+	public final static int TYPING_BENCHMARK_WORDS = 100; // per language
 	public final static int WORD_BACKGROUND_TASKS_DELAY = 15000; // ms
 	public final static int WORD_FREQUENCY_MAX = 25500;
 	public final static int WORD_FREQUENCY_NORMALIZATION_DIVIDER = 100; // normalized frequency = WORD_FREQUENCY_MAX / WORD_FREQUENCY_NORMALIZATION_DIVIDER
-	public final static int WORD_PAIR_MAX = 1000;
+	public final static int WORD_PAIR_MAX = 10000; // per language
 	public final static int WORD_PAIR_MAX_WORD_LENGTH = 6;
 	public final static int ZOMBIE_CHECK_INTERVAL = 1500; // ms
 	public final static int ZOMBIE_CHECK_MAX = 2;
@@ -22,6 +22,8 @@ import io.github.sspanak.tt9.R;
 import io.github.sspanak.tt9.preferences.settings.SettingsStore;
 import io.github.sspanak.tt9.ui.Vibration;
 import io.github.sspanak.tt9.ui.main.ResizableMainView;
+import io.github.sspanak.tt9.util.Metrics;
+import io.github.sspanak.tt9.util.Tracing;
 import io.github.sspanak.tt9.util.chars.Characters;
 
 public class SuggestionsBar {
@@ -56,6 +58,7 @@ public class SuggestionsBar {
 
 			mView.setLayoutManager(new LinearLayoutManager(context, RecyclerView.HORIZONTAL, false));
 			mView.setOnTouchListener(this::onTouch);
+			mView.getViewTreeObserver().addOnPreDrawListener(this::onPreDraw);
 
 			initDataAdapter(context);
 			initSeparator(context);
@@ -165,6 +168,8 @@ public class SuggestionsBar {
 
 
 	public void setSuggestions(List<String> newSuggestions, int initialSel, boolean containsGenerated) {
+		long start = Metrics.now();
+		long traceStart = Tracing.now();
 		ecoSetBackground(newSuggestions);
 
 		suggestions.clear();
@@ -174,6 +179,15 @@ public class SuggestionsBar {
 		addAllSuggestions(newSuggestions);
 		selectedIndex = Math.min(selectedIndex, suggestions.size() - 1);
 		setSuggestionsOnScreen();
+		Metrics.recordSince("render.suggestions", start);
+		Tracing.endSpan(Tracing.getCurrentId(), "SuggestionsBar.setSuggestions", traceStart);
+		Tracing.endOnNextFrame(Tracing.getCurrentId());
+	}
+
+
+	private boolean onPreDraw() {
+		Tracing.onFrame();
+		return true;
 	}
 
 
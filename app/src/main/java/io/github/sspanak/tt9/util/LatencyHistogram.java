@@ -0,0 +1,114 @@
+package io.github.sspanak.tt9.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds, in buckets with a constant relative precision, like HdrHistogram.
+ * Each power of two is split in 16 equal buckets, so the error is at most 1/16 (about 6%), from
+ * nanoseconds to minutes, using only a few kilobytes. Recording is lock-free, so it can be called
+ * from any thread.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+
+	public void record(long nanos) {
+		nanos = Math.max(nanos, 0);
+		counts.incrementAndGet(getBucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+
+		for (long current = max.get(); nanos > current && !max.compareAndSet(current, nanos); current = max.get());
+	}
+
+
+	/**
+	 * The first 16 values have their own buckets. Above that, the bucket is determined by the highest
+	 * bit and the next 4 bits after it.
+	 */
+	private static int getBucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+
+	/**
+	 * The highest value that falls in the given bucket.
+	 */
+	private static long getBucketValue(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+		long subBucket = SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1));
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+
+	public long getCount() {
+		return count.get();
+	}
+
+
+	public long getMax() {
+		return max.get();
+	}
+
+
+	public long getPercentile(double percentile) {
+		long target = (long) Math.ceil(percentile / 100 * count.get());
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target && seen > 0) {
+				return Math.min(getBucketValue(i), max.get());
+			}
+		}
+
+		return 0;
+	}
+
+
+	public void clear() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+
+	@NonNull
+	@Override
+	public String toString() {
+		long n = count.get();
+		return String.format(
+			Locale.ROOT,
+			"%d, avg: %.2f ms, p50: %.2f ms, p95: %.2f ms, p99: %.2f ms, max: %.2f ms",
+			n,
+			n > 0 ? total.get() / 1e6 / n : 0,
+			getPercentile(50) / 1e6,
+			getPercentile(95) / 1e6,
+			getPercentile(99) / 1e6,
+			max.get() / 1e6
+		);
+	}
+}
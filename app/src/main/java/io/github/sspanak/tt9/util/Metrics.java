@@ -0,0 +1,130 @@
+package io.github.sspanak.tt9.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named latency histograms, counters and gauges, safe to use from any thread. Unlike Timer, the
+ * callers keep their own start time, so measurements with the same name on different threads do not
+ * overwrite each other. The metrics are collected only at the Debug log level, otherwise, each call
+ * returns right away, without reading the clock.
+ *
+ * Usage:
+ *   long start = Metrics.now();
+ *   ...
+ *   Metrics.recordSince("query.words", start);
+ */
+public class Metrics {
+	private static final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, AtomicLong> gaugeMaximums = new ConcurrentHashMap<>();
+
+
+	public static boolean isEnabled() {
+		return Logger.isDebugLevel();
+	}
+
+
+	/**
+	 * Returns the start time for recordSince(), or 0, when the metrics are disabled.
+	 */
+	public static long now() {
+		return isEnabled() ? System.nanoTime() : 0;
+	}
+
+
+	public static void recordSince(@NonNull String name, long startTime) {
+		if (startTime != 0) {
+			record(name, System.nanoTime() - startTime);
+		}
+	}
+
+
+	public static void record(@NonNull String name, long nanos) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		LatencyHistogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histogram = histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+		}
+		histogram.record(nanos);
+	}
+
+
+	public static void count(@NonNull String name) {
+		count(name, 1);
+	}
+
+
+	public static void count(@NonNull String name, long delta) {
+		if (isEnabled()) {
+			get(counters, name).addAndGet(delta);
+		}
+	}
+
+
+	/**
+	 * Sets the current value of something that goes up and down, like a queue or a cache size. The
+	 * maximum is kept too.
+	 */
+	public static void gauge(@NonNull String name, long value) {
+		if (!isEnabled()) {
+			return;
+		}
+
+		get(gauges, name).set(value);
+		AtomicLong maximum = get(gaugeMaximums, name);
+		for (long current = maximum.get(); value > current && !maximum.compareAndSet(current, value); current = maximum.get());
+	}
+
+
+	@NonNull
+	private static AtomicLong get(@NonNull ConcurrentHashMap<String, AtomicLong> map, @NonNull String name) {
+		AtomicLong value = map.get(name);
+		return value != null ? value : map.computeIfAbsent(name, k -> new AtomicLong());
+	}
+
+
+	public static void clear() {
+		for (LatencyHistogram histogram : histograms.values()) {
+			histogram.clear();
+		}
+		counters.clear();
+		gauges.clear();
+		gaugeMaximums.clear();
+	}
+
+
+	@NonNull
+	public static String getSummary() {
+		if (!isEnabled() && histograms.isEmpty() && counters.isEmpty() && gauges.isEmpty()) {
+			return "Metrics are collected only at the Debug log level.";
+		}
+
+		StringBuilder summary = new StringBuilder();
+
+		for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+			if (entry.getValue().getCount() > 0) {
+				summary.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+			}
+		}
+
+		for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+			summary.append(entry.getKey()).append(": ").append(entry.getValue().get()).append("\n");
+		}
+
+		for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(gauges).entrySet()) {
+			AtomicLong maximum = gaugeMaximums.get(entry.getKey());
+			summary.append(entry.getKey()).append(": ").append(entry.getValue().get()).append(" (max: ").append(maximum != null ? maximum.get() : 0).append(")\n");
+		}
+
+		return summary.length() > 0 ? summary.toString().trim() : "No metrics yet.";
+	}
+}
@@ -2,8 +2,17 @@ package io.github.sspanak.tt9.util;
 
 import java.util.HashMap;
 
+/**
+ * Named stopwatches for logging and debouncing. Each thread has its own timers, so the same name
+ * can be used on different threads at the same time. For statistics, use Metrics instead.
+ */
 public class Timer {
-	private static final HashMap<String, Long> timers = new HashMap<>();
+	private static final ThreadLocal<HashMap<String, Long>> timers = new ThreadLocal<>() {
+		@Override
+		protected HashMap<String, Long> initialValue() {
+			return new HashMap<>();
+		}
+	};
 
 	public static void start() {
 		start("default");
@@ -20,20 +29,31 @@ public class Timer {
 	}
 
 	public static long get(String timerName) {
-		Long startTime = timers.get(timerName);
+		long time = getNanos(timerName);
+		return time < 0 ? -1 : time / 1000000;
+	}
+
+	public static long getNanos(String timerName) {
+		Long startTime = timers.get().get(timerName);
 		if (startTime == null) {
 			return -1;
 		}
-		return System.currentTimeMillis() - startTime;
+		return System.nanoTime() - startTime;
 	}
 
 	public static void start(String timerName) {
-		timers.put(timerName, System.currentTimeMillis());
+		timers.get().put(timerName, System.nanoTime());
 	}
 
 	public static long stop(String timerName) {
 		long time = get(timerName);
-		timers.remove(timerName);
+		timers.get().remove(timerName);
+		return time;
+	}
+
+	public static long stopNanos(String timerName) {
+		long time = getNanos(timerName);
+		timers.get().remove(timerName);
 		return time;
 	}
 }
@@ -0,0 +1,248 @@
+package io.github.sspanak.tt9.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+import io.github.sspanak.tt9.preferences.settings.SettingsStore;
+
+/**
+ * Records how long each part of processing a key press takes, from the key event until the new
+ * suggestions are drawn. Each key press gets an ID, which is passed along with the work, even to other
+ * threads, so that all parts are recorded under the same key press. Only the last key presses are
+ * kept and they can be exported in the Chrome trace format, to view them in Perfetto or in
+ * chrome://tracing.
+ *
+ * Like Metrics, tracing works only at the Debug log level. Otherwise, all calls return right away.
+ */
+public class Tracing {
+	private static final Trace[] traces = new Trace[SettingsStore.TRACE_BUFFER_SIZE];
+	private static final ArrayList<Trace> awaitingFrame = new ArrayList<>();
+	private static int lastId = 0;
+	private static volatile int currentId = 0;
+
+
+	private static class Span {
+		@NonNull private final String name;
+		@NonNull private final String threadName;
+		private final long threadId;
+		private final long start;
+		private final long end;
+
+		private Span(@NonNull String name, long start, long end) {
+			this.name = name;
+			this.start = start;
+			this.end = end;
+			threadId = Thread.currentThread().getId();
+			threadName = Thread.currentThread().getName();
+		}
+	}
+
+
+	private static class Trace {
+		private final int id;
+		@NonNull private final String name;
+		private final long start;
+		private long frameRequestTime = 0;
+		private long end = 0;
+		@NonNull private final ArrayList<Span> spans = new ArrayList<>();
+
+		private Trace(int id, @NonNull String name) {
+			this.id = id;
+			this.name = name;
+			start = System.nanoTime();
+		}
+	}
+
+
+	public static boolean isEnabled() {
+		return Logger.isDebugLevel();
+	}
+
+
+	/**
+	 * Returns the start time for endSpan(), or 0, when tracing is disabled.
+	 */
+	public static long now() {
+		return isEnabled() ? System.nanoTime() : 0;
+	}
+
+
+	/**
+	 * Starts a new trace and makes it the current one. The previous traces still waiting for a frame,
+	 * are considered complete, because a new key press replaces their suggestions anyway.
+	 */
+	public static synchronized int startTrace(@NonNull String name) {
+		if (!isEnabled()) {
+			return currentId = 0;
+		}
+
+		for (Trace trace : awaitingFrame) {
+			trace.end = trace.frameRequestTime;
+		}
+		awaitingFrame.clear();
+
+		Trace trace = new Trace(++lastId, name);
+		traces[trace.id % traces.length] = trace;
+		return currentId = trace.id;
+	}
+
+
+	/**
+	 * The trace of the key press being processed. Pass it to the code running later or on another
+	 * thread, so that it can add its spans to the correct trace.
+	 */
+	public static int getCurrentId() {
+		return currentId;
+	}
+
+
+	/**
+	 * Makes the given trace the current one, for example, while handling the results of a database
+	 * query started by a previous key press. Returns the previously current trace for restoring it.
+	 */
+	public static int resume(int traceId) {
+		int previousId = currentId;
+		currentId = traceId;
+		return previousId;
+	}
+
+
+	public static void endSpan(int traceId, @NonNull String name, long startTime) {
+		if (startTime != 0) {
+			addSpan(traceId, name, startTime, System.nanoTime());
+		}
+	}
+
+
+	private static synchronized void addSpan(int traceId, @NonNull String name, long start, long end) {
+		Trace trace = get(traceId);
+		if (trace != null) {
+			trace.spans.add(new Span(name, start, end));
+		}
+	}
+
+
+	/**
+	 * Completes the trace when the next frame is about to be drawn (see: onFrame()).
+	 */
+	public static synchronized void endOnNextFrame(int traceId) {
+		Trace trace = get(traceId);
+		if (trace != null && !awaitingFrame.contains(trace)) {
+			trace.frameRequestTime = System.nanoTime();
+			awaitingFrame.add(trace);
+		}
+	}
+
+
+	/**
+	 * Must be called before drawing each frame, on the UI thread.
+	 */
+	public static void onFrame() {
+		if (!isEnabled()) {
+			return;
+		}
+
+		synchronized (Tracing.class) {
+			long now = System.nanoTime();
+			for (Trace trace : awaitingFrame) {
+				trace.spans.add(new Span("RecyclerView layout", trace.frameRequestTime, now));
+				trace.end = now;
+			}
+			awaitingFrame.clear();
+		}
+	}
+
+
+	private static Trace get(int traceId) {
+		Trace trace = traceId > 0 ? traces[traceId % traces.length] : null;
+		return trace != null && trace.id == traceId ? trace : null;
+	}
+
+
+	public static synchronized void clear() {
+		for (int i = 0; i < traces.length; i++) {
+			traces[i] = null;
+		}
+		awaitingFrame.clear();
+	}
+
+
+	/**
+	 * Converts the traces to Chrome trace events. Each key press is an async event, because the key
+	 * presses may overlap, and each span is a "complete" event on the thread where it ran. The
+	 * unfinished traces end with their last span.
+	 */
+	@NonNull
+	public static synchronized String toJson() {
+		StringBuilder json = new StringBuilder("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+		HashMap<Long, String> threads = new HashMap<>();
+		boolean isFirst = true;
+
+		for (int i = 1; i <= traces.length; i++) {
+			Trace trace = traces[(lastId + i) % traces.length];
+			if (trace == null) {
+				continue;
+			}
+
+			long end = trace.end;
+			for (Span span : trace.spans) {
+				end = Math.max(end, span.end);
+				threads.put(span.threadId, span.threadName);
+			}
+
+			isFirst = appendKeyEvent(json, isFirst, trace.name, "b", trace.start, trace.id);
+			appendKeyEvent(json, false, trace.name, "e", Math.max(end, trace.start), trace.id);
+			for (Span span : trace.spans) {
+				appendSpanEvent(json, span, trace.id);
+			}
+		}
+
+		for (HashMap.Entry<Long, String> thread : threads.entrySet()) {
+			json.append(isFirst ? "" : ",").append(String.format(
+				Locale.ROOT,
+				"{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":\"%s\"}}",
+				thread.getKey(),
+				escape(thread.getValue())
+			));
+			isFirst = false;
+		}
+
+		return json.append("]}").toString();
+	}
+
+
+	private static boolean appendKeyEvent(@NonNull StringBuilder json, boolean isFirst, @NonNull String name, @NonNull String phase, long time, int traceId) {
+		json.append(isFirst ? "" : ",").append(String.format(
+			Locale.ROOT,
+			"{\"name\":\"%s\",\"cat\":\"key\",\"ph\":\"%s\",\"id\":%d,\"ts\":%.3f,\"pid\":1,\"tid\":0}",
+			escape(name),
+			phase,
+			traceId,
+			time / 1000.0
+		));
+
+		return false;
+	}
+
+
+	private static void appendSpanEvent(@NonNull StringBuilder json, @NonNull Span span, int traceId) {
+		json.append(",").append(String.format(
+			Locale.ROOT,
+			"{\"name\":\"%s\",\"cat\":\"span\",\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,\"pid\":1,\"tid\":%d,\"args\":{\"trace\":%d}}",
+			escape(span.name),
+			span.start / 1000.0,
+			(span.end - span.start) / 1000.0,
+			span.threadId,
+			traceId
+		));
+	}
+
+
+	@NonNull
+	private static String escape(@NonNull String text) {
+		return text.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+}